@@ -0,0 +1,295 @@
+package com.golaszewski.hash_mechanic.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Emits the straight-line round kernels used by the digests. This runs in the
+ * generate-sources phase of the build, before the main sources are compiled,
+ * so it carries its own copy of the constant tables from the specifications.
+ * 
+ * Every kernel keeps the working state in local variables and uses constant
+ * message indices. BLAKE kernels call one method per distinct round, which
+ * keeps each method well under the JIT's huge method limit.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class KernelGenerator {
+	public static final String PACKAGE = "com.golaszewski.hash_mechanic.hashes.kernels";
+
+	/**
+	 * The highest round count that gets a generated BLAKE-family kernel.
+	 */
+	public static final int MAX_BLAKE_ROUNDS = 14;
+
+	/**
+	 * The number of half rounds in full MD5.
+	 */
+	public static final int MD5_HALF_ROUNDS = 8;
+
+	/**
+	 * BLAKE-256 constants.
+	 */
+	public static final int[] C = { 0x243F6A88, 0x85A308D3, 0x13198A2E, 0x03707344, 0xA4093822, 0x299F31D0, 0x082EFA98,
+			0xEC4E6C89, 0x452821E6, 0x38D01377, 0xBE5466CF, 0x34E90C6C, 0xC0AC29B7, 0xC97C50DD, 0x3F84D5B5,
+			0xB5470917 };
+
+	/**
+	 * BLAKE permutations of {0, ... , 15}.
+	 */
+	public static final int[][] S = { { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+			{ 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 },
+			{ 11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4 },
+			{ 7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8 },
+			{ 9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13 },
+			{ 2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9 },
+			{ 12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11 },
+			{ 13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10 },
+			{ 6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5 },
+			{ 10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0 } };
+
+	/**
+	 * The state words touched by each of the eight G calls of a BLAKE round.
+	 */
+	public static final int[][] G_WORDS = { { 0, 4, 8, 12 }, { 1, 5, 9, 13 }, { 2, 6, 10, 14 }, { 3, 7, 11, 15 },
+			{ 0, 5, 10, 15 }, { 1, 6, 11, 12 }, { 2, 7, 8, 13 }, { 3, 4, 9, 14 } };
+
+	/**
+	 * MD5 additive constants, one per step.
+	 */
+	public static final int[] T = { 0xd76aa478, 0xe8c7b756, 0x242070db, 0xc1bdceee, 0xf57c0faf, 0x4787c62a,
+			0xa8304613, 0xfd469501, 0x698098d8, 0x8b44f7af, 0xffff5bb1, 0x895cd7be, 0x6b901122, 0xfd987193,
+			0xa679438e, 0x49b40821, 0xf61e2562, 0xc040b340, 0x265e5a51, 0xe9b6c7aa, 0xd62f105d, 0x02441453,
+			0xd8a1e681, 0xe7d3fbc8, 0x21e1cde6, 0xc33707d6, 0xf4d50d87, 0x455a14ed, 0xa9e3e905, 0xfcefa3f8,
+			0x676f02d9, 0x8d2a4c8a, 0xfffa3942, 0x8771f681, 0x6d9d6122, 0xfde5380c, 0xa4beea44, 0x4bdecfa9,
+			0xf6bb4b60, 0xbebfbc70, 0x289b7ec6, 0xeaa127fa, 0xd4ef3085, 0x04881d05, 0xd9d4d039, 0xe6db99e5,
+			0x1fa27cf8, 0xc4ac5665, 0xf4292244, 0x432aff97, 0xab9423a7, 0xfc93a039, 0x655b59c3, 0x8f0ccc92,
+			0xffeff47d, 0x85845dd1, 0x6fa87e4f, 0xfe2ce6e0, 0xa3014314, 0x4e0811a1, 0xf7537e82, 0xbd3af235,
+			0x2ad7d2bb, 0xeb86d391 };
+
+	/**
+	 * MD5 rotation amounts, four per round.
+	 */
+	public static final int[][] SHIFTS = { { 7, 12, 17, 22 }, { 5, 9, 14, 20 }, { 4, 11, 16, 23 }, { 6, 10, 15, 21 } };
+
+	/**
+	 * Generates all kernels.
+	 * 
+	 * @param args
+	 *            - the root directory of the generated sources.
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File(args[0], PACKAGE.replace('.', File.separatorChar));
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+
+		generateBlake(directory, "BLAKE256Kernels", "BLAKE-256", false);
+		generateBlake(directory, "BRAKE256Kernels", "BRAKE-256", true);
+		generateMD5(directory);
+	}
+
+	/**
+	 * Writes a BLAKE-family kernel class with one kernel per round count.
+	 * BRAKE drops the round constants and uses the identity permutation, so
+	 * all of its rounds are the same.
+	 */
+	private static void generateBlake(File directory, String className, String algorithm, boolean brake)
+			throws IOException {
+		try (PrintWriter out = new PrintWriter(new File(directory, className + ".java"), "UTF-8")) {
+			header(out, className, algorithm);
+			final int distinctRounds = brake ? 1 : S.length;
+
+			out.println("\t/**");
+			out.println("\t * Selects the kernel for a round count.");
+			out.println("\t * ");
+			out.println("\t * @param nRounds");
+			out.println("\t *            - the number of rounds.");
+			out.println("\t * @return the kernel, or null if none was generated for the count.");
+			out.println("\t */");
+			out.println("\tpublic static RoundKernel forRounds(int nRounds) {");
+			out.println("\t\tswitch (nRounds) {");
+			for (int n = 0; n <= MAX_BLAKE_ROUNDS; n++) {
+				out.println("\t\tcase " + n + ":");
+				out.println("\t\t\treturn " + className + "::rounds" + n + ";");
+			}
+			out.println("\t\tdefault:");
+			out.println("\t\t\treturn null;");
+			out.println("\t\t}");
+			out.println("\t}");
+
+			for (int n = 0; n <= MAX_BLAKE_ROUNDS; n++) {
+				out.println();
+				out.println("\tstatic void rounds" + n + "(int[] v, int[] m) {");
+				for (int r = 0; r < n; r++) {
+					out.println("\t\tround" + (r % distinctRounds) + "(v, m);");
+				}
+				out.println("\t}");
+			}
+
+			for (int r = 0; r < distinctRounds; r++) {
+				out.println();
+				out.println("\tprivate static void round" + r + "(int[] v, int[] m) {");
+				loadLocals(out, "v", 16);
+				loadLocals(out, "m", 16);
+
+				for (int i = 0; i < G_WORDS.length; i++) {
+					int[] w = G_WORDS[i];
+					String a = "v" + w[0], b = "v" + w[1], c = "v" + w[2], d = "v" + w[3];
+					int x = S[brake ? 0 : r][2 * i];
+					int y = S[brake ? 0 : r][2 * i + 1];
+
+					out.println("\t\t// G" + i);
+					out.println("\t\t" + a + " += " + b + " + " + message(x, y, brake) + ";");
+					out.println("\t\t" + d + " = Integer.rotateRight(" + d + " ^ " + a + ", 16);");
+					out.println("\t\t" + c + " += " + d + ";");
+					out.println("\t\t" + b + " = Integer.rotateRight(" + b + " ^ " + c + ", 12);");
+					out.println("\t\t" + a + " += " + b + " + " + message(y, x, brake) + ";");
+					out.println("\t\t" + d + " = Integer.rotateRight(" + d + " ^ " + a + ", 8);");
+					out.println("\t\t" + c + " += " + d + ";");
+					out.println("\t\t" + b + " = Integer.rotateRight(" + b + " ^ " + c + ", 7);");
+				}
+
+				storeLocals(out, "v", 16);
+				out.println("\t}");
+			}
+
+			out.println("}");
+		}
+	}
+
+	/**
+	 * Writes the message term of a G step. BLAKE mixes in the constant indexed
+	 * by the other permutation entry, while BRAKE uses the message word alone.
+	 */
+	private static String message(int word, int constant, boolean brake) {
+		if (brake) {
+			return "m" + word;
+		}
+		return "(m" + word + " ^ " + hex(C[constant]) + ")";
+	}
+
+	/**
+	 * Writes the MD5 kernel class with one kernel per half-round count. Each
+	 * kernel includes the feed-forward into the chaining state.
+	 */
+	private static void generateMD5(File directory) throws IOException {
+		final String className = "MD5Kernels";
+
+		try (PrintWriter out = new PrintWriter(new File(directory, className + ".java"), "UTF-8")) {
+			header(out, className, "MD5");
+
+			out.println("\t/**");
+			out.println("\t * Selects the kernel for a number of half rounds, where each half round");
+			out.println("\t * is eight steps.");
+			out.println("\t * ");
+			out.println("\t * @param halfRounds");
+			out.println("\t *            - the number of half rounds, from 0 to " + MD5_HALF_ROUNDS + ".");
+			out.println("\t * @return the kernel, or null if none was generated for the count.");
+			out.println("\t */");
+			out.println("\tpublic static RoundKernel forHalfRounds(int halfRounds) {");
+			out.println("\t\tswitch (halfRounds) {");
+			for (int n = 0; n <= MD5_HALF_ROUNDS; n++) {
+				out.println("\t\tcase " + n + ":");
+				out.println("\t\t\treturn " + className + "::halfRounds" + n + ";");
+			}
+			out.println("\t\tdefault:");
+			out.println("\t\t\treturn null;");
+			out.println("\t\t}");
+			out.println("\t}");
+
+			for (int n = 0; n <= MD5_HALF_ROUNDS; n++) {
+				out.println();
+				out.println("\tstatic void halfRounds" + n + "(int[] state, int[] x) {");
+				out.println("\t\tint a = state[0], b = state[1], c = state[2], d = state[3];");
+				if (n > 0) {
+					loadLocals(out, "x", 16);
+				}
+
+				String[] words = { "a", "b", "c", "d" };
+				for (int step = 0; step < n * 8; step++) {
+					int round = step / 16;
+					int i = step % 16;
+					String a = words[(64 - step) % 4];
+					String b = words[(65 - step) % 4];
+					String c = words[(66 - step) % 4];
+					String d = words[(67 - step) % 4];
+
+					out.println("\t\t" + a + " = " + b + " + Integer.rotateLeft(" + a + " + " + function(round, b, c, d)
+							+ " + x" + messageIndex(round, i) + " + " + hex(T[step]) + ", " + SHIFTS[round][i % 4]
+							+ "); /* " + (step + 1) + " */");
+				}
+
+				out.println("\t\tstate[0] += a;");
+				out.println("\t\tstate[1] += b;");
+				out.println("\t\tstate[2] += c;");
+				out.println("\t\tstate[3] += d;");
+				out.println("\t}");
+			}
+
+			out.println("}");
+		}
+	}
+
+	/**
+	 * Writes the boolean function of an MD5 round.
+	 */
+	private static String function(int round, String b, String c, String d) {
+		switch (round) {
+		case 0:
+			return "((" + b + " & " + c + ") | (~" + b + " & " + d + "))";
+		case 1:
+			return "((" + b + " & " + d + ") | (" + c + " & ~" + d + "))";
+		case 2:
+			return "(" + b + " ^ " + c + " ^ " + d + ")";
+		default:
+			return "(" + c + " ^ (" + b + " | ~" + d + "))";
+		}
+	}
+
+	/**
+	 * Computes the message word read by step i of an MD5 round.
+	 */
+	private static int messageIndex(int round, int i) {
+		switch (round) {
+		case 0:
+			return i;
+		case 1:
+			return (1 + 5 * i) % 16;
+		case 2:
+			return (5 + 3 * i) % 16;
+		default:
+			return (7 * i) % 16;
+		}
+	}
+
+	private static void header(PrintWriter out, String className, String algorithm) {
+		out.println("package " + PACKAGE + ";");
+		out.println();
+		out.println("/**");
+		out.println(" * Straight-line " + algorithm + " kernels. Generated by KernelGenerator; do not edit.");
+		out.println(" */");
+		out.println("public final class " + className + " {");
+		out.println();
+		out.println("\tprivate " + className + "() {");
+		out.println("\t}");
+		out.println();
+	}
+
+	private static void loadLocals(PrintWriter out, String array, int count) {
+		for (int i = 0; i < count; i++) {
+			out.println("\t\tint " + array + i + " = " + array + "[" + i + "];");
+		}
+	}
+
+	private static void storeLocals(PrintWriter out, String array, int count) {
+		for (int i = 0; i < count; i++) {
+			out.println("\t\t" + array + "[" + i + "] = " + array + i + ";");
+		}
+	}
+
+	private static String hex(int value) {
+		return String.format("0x%08X", value);
+	}
+}
@@ -0,0 +1,77 @@
+package com.golaszewski.hash_mechanic.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.crypto.Digest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+import com.golaszewski.hash_mechanic.hashes.BatchableDigest;
+
+/**
+ * Measures messages hashed per second for every digest and round count, one
+ * message at a time and in batches. The short length fits one block with its
+ * padding; the long length is a million bits.
+ * 
+ * @author Ennis Golaszewski
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DigestBenchmark {
+	/**
+	 * The number of messages per batch call.
+	 */
+	public static final int LANES = 64;
+
+	@Param({ "md5-1", "md5-2", "md5-3", "md5-4", "blake-14", "brake-1", "brake-4", "brake-14" })
+	public String digest;
+
+	@Param({ "32", "131072" })
+	public int length;
+
+	private Digest single;
+	private BatchDigest batch;
+	private byte[] messages;
+	private byte[] out;
+
+	@Setup
+	public void setup() {
+		BatchableDigest digest = Digests.create(this.digest);
+		single = digest;
+		batch = digest.createBatch(LANES);
+		messages = new byte[LANES * length];
+		out = new byte[LANES * digest.getDigestSize()];
+		new Random(length).nextBytes(messages);
+	}
+
+	@Benchmark
+	public byte[] single() {
+		single.update(messages, 0, length);
+		single.doFinal(out, 0);
+		single.reset();
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LANES)
+	public byte[] batch() {
+		batch.digest(messages, 0, length, LANES, out, 0);
+		return out;
+	}
+}
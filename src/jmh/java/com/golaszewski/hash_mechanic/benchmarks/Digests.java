@@ -0,0 +1,42 @@
+package com.golaszewski.hash_mechanic.benchmarks;
+
+import com.golaszewski.hash_mechanic.hashes.BLAKE256Digest;
+import com.golaszewski.hash_mechanic.hashes.BRAKE256Digest;
+import com.golaszewski.hash_mechanic.hashes.BatchableDigest;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+/**
+ * Creates digests from the names used as benchmark parameters. A name is the
+ * algorithm followed by its round count, such as md5-2 or brake-4.
+ * 
+ * @author Ennis Golaszewski
+ */
+final class Digests {
+	private Digests() {
+	}
+
+	/**
+	 * @param name
+	 *            - the algorithm and round count.
+	 * @return a new digest.
+	 */
+	static BatchableDigest create(String name) {
+		int dash = name.lastIndexOf('-');
+		String algorithm = name.substring(0, dash);
+		double rounds = Double.parseDouble(name.substring(dash + 1));
+
+		switch (algorithm) {
+		case "md5":
+			return new MD5Wrapper(rounds);
+		case "blake":
+			if (rounds != BLAKE256Digest.NUM_ROUNDS) {
+				throw new IllegalArgumentException("BLAKE-256 only runs " + BLAKE256Digest.NUM_ROUNDS + " rounds!");
+			}
+			return new BLAKE256Digest();
+		case "brake":
+			return new BRAKE256Digest((int) rounds);
+		default:
+			throw new IllegalArgumentException("Unknown digest " + name + "!");
+		}
+	}
+}
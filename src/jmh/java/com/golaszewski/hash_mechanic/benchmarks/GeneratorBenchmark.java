@@ -0,0 +1,136 @@
+package com.golaszewski.hash_mechanic.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.HashChainGenerator;
+import com.golaszewski.hash_mechanic.generator.HighDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.KBitDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.RandomInputGenerator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.generator.TestGenerator;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * Measures each generator end to end into a sink that discards its input, so
+ * only hashing and message construction are timed. The bytes counter reports
+ * output bytes per second. The k-bit generators are too large to run whole,
+ * so they run their leading shard of about {@link #SAMPLE_RECORDS} records.
+ * The random generator hashes that many messages of the default length from
+ * seed 0.
+ * 
+ * @author Ennis Golaszewski
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+	/**
+	 * The number of records sampled from a k-bit generator, and the number of
+	 * random messages.
+	 */
+	public static final long SAMPLE_RECORDS = 1 << 17;
+
+	@Param({ "lowdensity", "highdensity", "lowdensity3", "highdensity3", "random", "hashchain", "test" })
+	public String generator;
+
+	@Param({ "md5-4", "blake-14", "brake-4" })
+	public String digest;
+
+	@Param({ "1" })
+	public int threads;
+
+	private Generator instance;
+	private HashSink sink;
+	private long outputLength;
+
+	/**
+	 * Counts the output bytes produced during an iteration.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Output {
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			bytes = 0;
+		}
+	}
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		switch (generator) {
+		case "lowdensity":
+			instance = new LowDensityGenerator(threads);
+			break;
+		case "highdensity":
+			instance = new HighDensityGenerator(threads);
+			break;
+		case "lowdensity3":
+			instance = createSample((byte) 0x00, 3);
+			break;
+		case "highdensity3":
+			instance = createSample((byte) 0xFF, 3);
+			break;
+		case "random":
+			instance = new RandomInputGenerator(0, RandomInputGenerator.DEFAULT_MESSAGE_LENGTH, SAMPLE_RECORDS,
+					threads, Shard.WHOLE);
+			break;
+		case "hashchain":
+			instance = new HashChainGenerator();
+			break;
+		case "test":
+			instance = new TestGenerator();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown generator " + generator + "!");
+		}
+
+		sink = new HashSink() {
+			public void write(byte[] bytes, int offset, int length) {
+				blackhole.consume(bytes);
+			}
+
+			public void close() {
+			}
+		};
+		outputLength = instance.getOutputLength(Digests.create(digest));
+	}
+
+	/**
+	 * Creates a k-bit generator over the leading shard of about
+	 * {@link #SAMPLE_RECORDS} records.
+	 */
+	private KBitDensityGenerator createSample(byte base, int weight) {
+		long total = new KBitDensityGenerator(base, weight).getTotalHashCount(Digests.create(digest));
+		return new KBitDensityGenerator(base, weight, threads, new Shard(0, (int) Math.max(1, total
+				/ SAMPLE_RECORDS)));
+	}
+
+	@Benchmark
+	public void generate(Output output) throws IOException {
+		instance.generate(() -> Digests.create(digest), sink);
+		output.bytes += outputLength;
+	}
+}
@@ -0,0 +1,87 @@
+package com.golaszewski.hash_mechanic.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.golaszewski.hash_mechanic.output.HashSink;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+/**
+ * Measures writing a dataset file record by record through each writer mode,
+ * as {@link com.golaszewski.hash_mechanic.Driver#doTest} does. The bytes
+ * counter reports bytes written per second.
+ * 
+ * @author Ennis Golaszewski
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputBenchmark {
+	@Param({ "STREAM", "ASYNC", "MAPPED" })
+	public WriterMode mode;
+
+	@Param({ "16", "32" })
+	public int record;
+
+	@Param({ "67108864" })
+	public long length;
+
+	private File file;
+	private byte[] records;
+
+	/**
+	 * Counts the bytes written during an iteration.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Output {
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			bytes = 0;
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		file = File.createTempFile("hash-mechanic", ".dat");
+		records = new byte[1 << 16];
+		new Random(record).nextBytes(records);
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public void write(Output output) throws IOException {
+		try (HashSink sink = mode.open(file, length)) {
+			for (long written = 0; written < length; written += record) {
+				sink.write(records, (int) (written % records.length), record);
+			}
+		}
+		output.bytes += length;
+	}
+}
@@ -1,45 +1,268 @@
 package com.golaszewski.hash_mechanic;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 import org.apache.commons.codec.binary.Hex;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.util.Arrays;
 
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.generator.Checkpoint;
 import com.golaszewski.hash_mechanic.generator.Generator;
 import com.golaszewski.hash_mechanic.generator.HashChainGenerator;
 import com.golaszewski.hash_mechanic.generator.HighDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.KBitDensityGenerator;
 import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.RandomInputGenerator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.generator.TestGenerator;
+import com.golaszewski.hash_mechanic.hashes.BLAKE256Digest;
+import com.golaszewski.hash_mechanic.hashes.BRAKE256Digest;
+import com.golaszewski.hash_mechanic.hashes.MD5Steps;
 import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
-import com.google.common.io.Files;
+import com.golaszewski.hash_mechanic.metrics.GenerationMetrics;
+import com.golaszewski.hash_mechanic.metrics.ProgressReporter;
+import com.golaszewski.hash_mechanic.output.DatasetHeader;
+import com.golaszewski.hash_mechanic.output.HashSink;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+import com.golaszewski.hash_mechanic.shard.ShardDescriptor;
 
 public class Driver {
 
 	/**
-	 * Runs this generator.
+	 * Runs the jobs selected on the command line, several at once. Without
+	 * arguments, this sweeps MD5 from 0.5 to 4 rounds through the low density,
+	 * high density and hash chain generators.
 	 * 
 	 * @param args
-	 *            - not used, there are no command line arguments at this time.
+	 *            - the options described by {@link DriverOptions#USAGE}.
 	 */
-	public static void main(String[] args) {
-		for (double i = 0.5; i <= 4; i += 0.5) {
-			doTest(new LowDensityGenerator(), new MD5Wrapper(i), i);
-			doTest(new HighDensityGenerator(), new MD5Wrapper(i), i);
-			doTest(new HashChainGenerator(), new MD5Wrapper(i), i);
+	public static void main(String[] args) throws InterruptedException {
+		DriverOptions options;
+
+		try {
+			options = DriverOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.print(DriverOptions.USAGE);
+			System.exit(2);
+			return;
 		}
+
+		if (options.isHelp()) {
+			System.out.print(DriverOptions.USAGE);
+			return;
+		}
+
+		List<Job> jobs = plan(options);
+
+		if (options.isDryRun()) {
+			printPlan(jobs);
+			return;
+		}
+
+		options.getDirectory().mkdirs();
+		new JobScheduler(options.getJobs(), options.getMemoryBudget()).run(jobs);
 	}
 
-	public static byte[] doTest(Generator generator, Digest digest, double nRounds) {
-		try {
-			byte[] output;
-			output = generator.generateBytes(digest);
-			// printResult(output, digest.getDigestSize());
-			Files.write(output, generateFile(digest.getAlgorithmName(), generator.getName(), nRounds));
+	/**
+	 * Lists the jobs selected by the options, ordered by round count, then
+	 * digest, then generator.
+	 */
+	public static List<Job> plan(DriverOptions options) {
+		List<Job> jobs = new ArrayList<Job>();
+		List<Double> rounds = options.getRounds();
+		RunSettings settings = options.getSettings();
+
+		for (double nRounds : rounds) {
+			for (String digest : options.getDigests()) {
+				Supplier<? extends Digest> digests = createDigests(digest, nRounds, nRounds == rounds.get(0));
+				if (digests == null) {
+					continue;
+				}
+
+				for (String generator : options.getGenerators()) {
+					jobs.add(new Job(createGenerator(generator, options), digests,
+							digest.equals("BLAKE-256") ? BLAKE256Digest.NUM_ROUNDS : nRounds, settings));
+				}
+			}
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Prints each planned file with its size, and the total.
+	 */
+	public static void printPlan(List<Job> jobs) {
+		long total = 0;
+
+		for (Job job : jobs) {
+			long length = job.getOutputLength();
+			total += length;
+			System.out.printf("%-50s %,20d bytes%n", job.getOutput().getPath(), length);
+		}
+
+		System.out.printf("%d files, %,d bytes (%.1f MiB)%n", jobs.size(), total, total / (double) (1L << 20));
+	}
+
+	/**
+	 * Supplies a digest running a round count, or returns null when the digest
+	 * does not run at that count. MD5 runs the number of steps in the rounds,
+	 * sixteen to a round. BLAKE-256 only runs its full rounds, so it is planned
+	 * once, on the first round count of the sweep.
+	 */
+	private static Supplier<? extends Digest> createDigests(String digest, double nRounds, boolean first) {
+		switch (digest) {
+		case "MD5":
+			final int nSteps = (int) Math.round(nRounds * MD5Steps.STEPS_PER_ROUND);
+			return () -> MD5Wrapper.withSteps(nSteps);
+		case "BLAKE-256":
+			return first ? () -> new BLAKE256Digest() : null;
+		case "BRAKE-256":
+			return (nRounds == Math.rint(nRounds)) ? () -> new BRAKE256Digest((int) nRounds) : null;
+		default:
+			throw new IllegalArgumentException("Unknown digest " + digest + "!");
+		}
+	}
+
+	private static Generator createGenerator(String generator, DriverOptions options) {
+		final int threads = options.getThreads();
+		final Shard shard = options.getShard();
+
+		switch (generator) {
+		case "lowdensity":
+			return new LowDensityGenerator(threads, shard);
+		case "highdensity":
+			return new HighDensityGenerator(threads, shard);
+		case "lowdensity3":
+			return new KBitDensityGenerator((byte) 0x00, 3, threads, shard);
+		case "highdensity3":
+			return new KBitDensityGenerator((byte) 0xFF, 3, threads, shard);
+		case "lowdensity4":
+			return new KBitDensityGenerator((byte) 0x00, 4, threads, shard);
+		case "highdensity4":
+			return new KBitDensityGenerator((byte) 0xFF, 4, threads, shard);
+		case "hashchain":
+			return new HashChainGenerator();
+		case "random":
+			return new RandomInputGenerator(options.getSeed(), options.getMessageLength(), options.getMessages(),
+					threads, shard);
+		case "test":
+			return new TestGenerator();
+		default:
+			throw new IllegalArgumentException("Unknown generator " + generator + "!");
+		}
+	}
+
+	/**
+	 * Runs a generator over a digest, streaming the output into a data file.
+	 * Progress is printed periodically and published over JMX while it runs.
+	 * 
+	 * @return the file that was written.
+	 */
+	public static File doTest(Generator generator, Digest digest, double nRounds) {
+		File output = generateFile(digest.getAlgorithmName(), generator.getName(), nRounds);
+
+		GenerationMetrics metrics = generator.getMetrics();
+
+		ProgressReporter reporter = new ProgressReporter(metrics, output.getName(), ProgressReporter.DEFAULT_PERIOD);
+
+		try (HashSink sink = WriterMode.STREAM.open(output, generator.getOutputLength(digest), metrics)) {
+			generator.generate(digest, sink);
 			return output;
 		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RuntimeException("Error in writing file!");
+			throw new RuntimeException("Error in writing " + output + "!", e);
+		} finally {
+			reporter.close();
+		}
+	}
+
+	/**
+	 * Runs a generator over fresh instances of a digest, writing the output into
+	 * a data file in the directory of the settings and analyzing it as it is
+	 * generated. Parallel generators take one digest per worker thread.
+	 * Resumable generators save a checkpoint beside the file while they run,
+	 * and a run that finds one continues the file from it instead of starting
+	 * over. The checkpoint is removed once the file is complete. Analyzed runs
+	 * do not checkpoint, since a resumed run would only analyze the bytes after
+	 * the checkpoint. If the cache holds a verified copy of the dataset in the
+	 * file, it is reused without generating anything. Analyzed runs always
+	 * generate, since the analysis needs the output. A sharded generator
+	 * writes a {@link ShardDescriptor} beside its partial file.
+	 * 
+	 * @param digests
+	 *            - supplies identically configured instances of the digest.
+	 * @param nRounds
+	 *            - the round count of the digest, used to name the file and
+	 *            recorded in container headers.
+	 * @param settings
+	 *            - how the data file is written.
+	 * @return the file that was written.
+	 */
+	public static File doTest(Generator generator, Supplier<? extends Digest> digests, double nRounds,
+			RunSettings settings) {
+		Digest digest = digests.get();
+		File output = generateFile(generator, digest, nRounds, settings);
+		WriterMode mode = settings.getMode();
+		OutputFormat format = settings.getFormat();
+		Analysis analysis = settings.getAnalysis();
+		DatasetCache cache = settings.getCache();
+		GenerationMetrics metrics = generator.getMetrics();
+		DatasetHeader header = createHeader(generator, digest, nRounds);
+		Checkpoint checkpoint = (generator.isResumable() && !analysis.isEnabled()) ? new Checkpoint(output,
+				generator, digest) : Checkpoint.NONE;
+		boolean cached = cache.isEnabled() && mode != WriterMode.NONE && !analysis.isEnabled();
+		String key = cached ? DatasetCache.createKey(generator, digest, nRounds, format) : null;
+
+		try {
+			if (cached && cache.lookup(key, output)) {
+				System.out.println("Reusing cached " + output + ".");
+				return output;
+			}
+
+			if (checkpoint.load(output)) {
+				System.out.println("Resuming " + output + " from byte " + checkpoint.getOffset() + ".");
+			}
+
+			ProgressReporter reporter = new ProgressReporter(metrics, output.getPath(),
+					ProgressReporter.DEFAULT_PERIOD);
+
+			try (HashSink sink = analysis.open(format.open(output, mode, header, checkpoint.getOffset(), metrics),
+					generator, digest, output)) {
+				generator.generate(digests, sink, checkpoint);
+			} finally {
+				reporter.close();
+			}
+
+			if (cached) {
+				cache.put(key, output);
+			}
+			if (!generator.getShard().isWhole() && mode != WriterMode.NONE) {
+				ShardDescriptor.create(generator, digest, nRounds, format, output);
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Error in writing " + output + "!", e);
 		}
+
+		checkpoint.delete();
+		return output;
+	}
+
+	/**
+	 * Describes the dataset a generator produces for a digest.
+	 * 
+	 * @param nRounds
+	 *            - the round count of the digest, or NaN if it is not known.
+	 */
+	public static DatasetHeader createHeader(Generator generator, Digest digest, double nRounds) {
+		return new DatasetHeader(digest.getAlgorithmName(), generator.getName(), nRounds, digest.getDigestSize(),
+				generator.getHashCount(digest));
 	}
 
 	public static File generateFile(String algorithm, String testName, double nRounds) {
@@ -47,6 +270,30 @@ public class Driver {
 		return new File(path);
 	}
 
+	/**
+	 * Names a data file inside a directory.
+	 */
+	public static File generateFile(File directory, String algorithm, String testName, double nRounds) {
+		return generateFile(directory, algorithm, testName, nRounds, OutputFormat.RAW);
+	}
+
+	/**
+	 * Names the data file a generator writes for a digest under the settings
+	 * of a run. A shard is named after the part of the output it holds.
+	 */
+	public static File generateFile(Generator generator, Digest digest, double nRounds, RunSettings settings) {
+		return generateFile(settings.getDirectory(), digest.getAlgorithmName(), generator.getShard().name(
+				generator.getName()), nRounds, settings.getFormat());
+	}
+
+	/**
+	 * Names a data file inside a directory, with the extension of its format.
+	 */
+	public static File generateFile(File directory, String algorithm, String testName, double nRounds,
+			OutputFormat format) {
+		return new File(directory, algorithm + "." + testName + "." + nRounds + format.getExtension());
+	}
+
 	/**
 	 * Prints out the resulting binary data.
 	 * 
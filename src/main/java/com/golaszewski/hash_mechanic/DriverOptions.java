@@ -0,0 +1,460 @@
+package com.golaszewski.hash_mechanic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.generator.RandomInputGenerator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.hashes.MD5Steps;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+/**
+ * The command line options of the {@link Driver}. Options take the form
+ * {@code --name value} or {@code --name=value}; lists are comma separated.
+ * Every option has a default, and the defaults reproduce the original sweep of
+ * MD5 from 0.5 to 4 rounds.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class DriverOptions {
+	/**
+	 * The digests that can be selected.
+	 */
+	public static final List<String> DIGESTS = Arrays.asList("MD5", "BLAKE-256", "BRAKE-256");
+
+	/**
+	 * The generators that can be selected.
+	 */
+	public static final List<String> GENERATORS = Arrays.asList("lowdensity", "highdensity", "lowdensity3",
+			"highdensity3", "lowdensity4", "highdensity4", "hashchain", "random", "test");
+
+	public static final String USAGE = "Usage: Driver [options]\n"
+			+ "  --digest LIST      digests to test: MD5, BLAKE-256, BRAKE-256 (default MD5)\n"
+			+ "  --generator LIST   lowdensity, highdensity, lowdensity3, highdensity3,\n"
+			+ "                     lowdensity4, highdensity4, hashchain, random, test\n"
+			+ "                     (default lowdensity,highdensity,hashchain). The 3 and\n"
+			+ "                     4 variants flip that many bits of the base message\n"
+			+ "  --seed N           seed of the random generator's messages (default 0)\n"
+			+ "  --messages N       messages hashed by the random generator, with an\n"
+			+ "                     optional k, m or g suffix (default 16m)\n"
+			+ "  --message-length N bytes in each random message (default 64)\n"
+			+ "  --rounds FROM:TO[:STEP]\n"
+			+ "                     round counts to sweep (default 0.5:4:0.5). MD5 runs up\n"
+			+ "                     to 4 rounds in steps of 1/16 round (one MD5 step),\n"
+			+ "                     BRAKE-256 whole rounds only, and BLAKE-256 always runs\n"
+			+ "                     its full 14 rounds\n"
+			+ "  --output DIR       directory for the data files (default .)\n"
+			+ "  --jobs N           data files generated at once (default: available\n"
+			+ "                     processors)\n"
+			+ "  --threads N        worker threads per density generator (default:\n"
+			+ "                     available processors divided by jobs)\n"
+			+ "  --memory SIZE      buffer budget for running jobs, with an optional k, m or\n"
+			+ "                     g suffix (default: half the maximum heap)\n"
+			+ "  --mode MODE        stream, async, mapped or none (default stream). async\n"
+			+ "                     writes from a separate thread while hashing goes on.\n"
+			+ "                     none writes no data files, for use with --analyze or\n"
+			+ "                     --avalanche\n"
+			+ "  --format FORMAT    raw, container (with a header and fixed-stride records)\n"
+			+ "                     or ascii (one '0' or '1' per bit) (default raw)\n"
+			+ "  --analyze          compute randomness statistics as the data is generated\n"
+			+ "                     and save them beside each data file. ShardMerger\n"
+			+ "                     combines those of the shards\n"
+			+ "  --avalanche        compute the avalanche matrix of each density dataset\n"
+			+ "                     and save it beside the data file. ShardMerger\n"
+			+ "                     combines those of the shards\n"
+			+ "  --cache            reuse data files generated by earlier runs when their\n"
+			+ "                     checksums still match\n"
+			+ "  --cache-budget SIZE\n"
+			+ "                     disk space for cached data files, with an optional k,\n"
+			+ "                     m or g suffix. The least recently used files beyond it\n"
+			+ "                     are deleted. Implies --cache (default: unlimited)\n"
+			+ "  --shard INDEX/COUNT\n"
+			+ "                     generate only part INDEX (from 0) of COUNT equal parts\n"
+			+ "                     of each density dataset, with a .shard descriptor for\n"
+			+ "                     ShardMerger. Selects lowdensity,highdensity by default\n"
+			+ "  --dry-run          print the planned files and sizes without generating\n"
+			+ "  --help             print this message\n";
+
+	private List<String> digests = Arrays.asList("MD5");
+	private List<String> generators = Arrays.asList("lowdensity", "highdensity", "hashchain");
+	private double fromRounds = 0.5;
+	private double toRounds = 4;
+	private double stepRounds = 0.5;
+	private File directory = new File(".");
+	private int jobs = Runtime.getRuntime().availableProcessors();
+	private int threads;
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+	private WriterMode mode = WriterMode.STREAM;
+	private OutputFormat format = OutputFormat.RAW;
+	private boolean analyze;
+	private boolean avalanche;
+	private boolean cache;
+	private Shard shard = Shard.WHOLE;
+	private boolean generatorsGiven;
+	private long cacheBudget = Long.MAX_VALUE;
+	private long seed;
+	private long messages = RandomInputGenerator.DEFAULT_MESSAGES;
+	private int messageLength = RandomInputGenerator.DEFAULT_MESSAGE_LENGTH;
+	private boolean dryRun;
+	private boolean help;
+
+	/**
+	 * Parses command line arguments.
+	 * 
+	 * @param args
+	 *            - the arguments given to the program.
+	 * @return the options, with defaults for any not given.
+	 * @throws IllegalArgumentException
+	 *             if an option is unknown or has an invalid value.
+	 */
+	public static DriverOptions parse(String[] args) {
+		DriverOptions options = new DriverOptions();
+
+		for (int i = 0; i < args.length; i++) {
+			String name = args[i];
+			String value = null;
+
+			int equals = name.indexOf('=');
+			if (equals >= 0) {
+				value = name.substring(equals + 1);
+				name = name.substring(0, equals);
+			}
+
+			switch (name) {
+			case "--dry-run":
+				options.dryRun = true;
+				continue;
+			case "--analyze":
+				options.analyze = true;
+				continue;
+			case "--avalanche":
+				options.avalanche = true;
+				continue;
+			case "--cache":
+				options.cache = true;
+				continue;
+			case "--help":
+			case "-h":
+				options.help = true;
+				continue;
+			default:
+				break;
+			}
+
+			if (value == null) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing value for " + name + "!");
+				}
+				value = args[++i];
+			}
+
+			switch (name) {
+			case "--digest":
+				options.digests = parseList(value, DIGESTS, name);
+				break;
+			case "--generator":
+				options.generators = parseList(value, GENERATORS, name);
+				options.generatorsGiven = true;
+				break;
+			case "--rounds":
+				options.parseRounds(value);
+				break;
+			case "--output":
+				options.directory = new File(value);
+				break;
+			case "--jobs":
+				options.jobs = parsePositive(value, name);
+				break;
+			case "--threads":
+				options.threads = parsePositive(value, name);
+				break;
+			case "--memory":
+				options.memoryBudget = parseSize(value, name);
+				break;
+			case "--seed":
+				try {
+					options.seed = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("--seed needs an integer, not " + value + "!");
+				}
+				break;
+			case "--messages":
+				options.messages = parseSize(value, name);
+				break;
+			case "--message-length":
+				options.messageLength = parsePositive(value, name);
+				break;
+			case "--shard":
+				options.shard = Shard.parse(value);
+				break;
+			case "--cache-budget":
+				options.cache = true;
+				options.cacheBudget = parseSize(value, name);
+				break;
+			case "--format":
+				try {
+					options.format = OutputFormat.valueOf(value.toUpperCase(Locale.ROOT));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown output format " + value + "!");
+				}
+				break;
+			case "--mode":
+				try {
+					options.mode = WriterMode.valueOf(value.toUpperCase(Locale.ROOT));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown writer mode " + value + "!");
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + name + "!");
+			}
+		}
+
+		if (!options.shard.isWhole()) {
+			options.checkShard();
+		}
+		if (options.digests.contains("MD5")) {
+			options.checkSteps();
+		}
+
+		return options;
+	}
+
+	/**
+	 * MD5 is reduced one step at a time, so its round counts must be whole
+	 * numbers of steps.
+	 */
+	private void checkSteps() {
+		for (double nRounds : getRounds()) {
+			double nSteps = nRounds * MD5Steps.STEPS_PER_ROUND;
+			if (nSteps != Math.rint(nSteps) || nSteps > MD5Steps.NUM_STEPS) {
+				throw new IllegalArgumentException("MD5 cannot run " + nRounds + " rounds, only multiples of 1/"
+						+ MD5Steps.STEPS_PER_ROUND + " up to 4!");
+			}
+		}
+	}
+
+	/**
+	 * Only the density and random generators split into shards, and container
+	 * headers cannot be split, so sharded runs are limited to the rest. The
+	 * analyses of the shards are merged along with their data files, so a
+	 * sharded run must write them.
+	 */
+	private void checkShard() {
+		if (format == OutputFormat.CONTAINER) {
+			throw new IllegalArgumentException("--shard cannot write container files, merge raw files instead!");
+		}
+		if (mode == WriterMode.NONE) {
+			throw new IllegalArgumentException("--shard needs data files to merge, it cannot run with --mode none!");
+		}
+
+		List<String> density = Arrays.asList("lowdensity", "highdensity");
+		if (!generatorsGiven) {
+			generators = density;
+		} else if (generators.contains("hashchain") || generators.contains("test")) {
+			throw new IllegalArgumentException("--shard only applies to the density and random generators!");
+		}
+	}
+
+	/**
+	 * Matches each comma separated name against the known names, ignoring
+	 * case, and returns the known spelling.
+	 */
+	private static List<String> parseList(String value, List<String> known, String option) {
+		List<String> names = new ArrayList<String>();
+
+		for (String name : value.split(",")) {
+			String match = null;
+			for (String candidate : known) {
+				if (candidate.equalsIgnoreCase(name.trim())) {
+					match = candidate;
+				}
+			}
+			if (match == null) {
+				throw new IllegalArgumentException("Unknown value " + name + " for " + option + ", expected one of "
+						+ known + "!");
+			}
+			if (!names.contains(match)) {
+				names.add(match);
+			}
+		}
+
+		return names;
+	}
+
+	private static int parsePositive(String value, String option) {
+		try {
+			int number = Integer.parseInt(value);
+			if (number > 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		throw new IllegalArgumentException(option + " needs a positive integer, not " + value + "!");
+	}
+
+	/**
+	 * Parses a byte count with an optional binary k, m or g suffix.
+	 */
+	private static long parseSize(String value, String option) {
+		String digits = value.toLowerCase(Locale.ROOT);
+		int shift = 0;
+
+		if (digits.endsWith("k")) {
+			shift = 10;
+		} else if (digits.endsWith("m")) {
+			shift = 20;
+		} else if (digits.endsWith("g")) {
+			shift = 30;
+		}
+		if (shift > 0) {
+			digits = digits.substring(0, digits.length() - 1);
+		}
+
+		try {
+			long size = Long.parseLong(digits);
+			if (size > 0 && size <= (Long.MAX_VALUE >> shift)) {
+				return size << shift;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		throw new IllegalArgumentException(option + " needs a positive size, not " + value + "!");
+	}
+
+	private void parseRounds(String value) {
+		String[] parts = value.split(":");
+
+		try {
+			if (parts.length < 1 || parts.length > 3) {
+				throw new NumberFormatException();
+			}
+			fromRounds = Double.parseDouble(parts[0]);
+			toRounds = (parts.length > 1) ? Double.parseDouble(parts[1]) : fromRounds;
+			stepRounds = (parts.length > 2) ? Double.parseDouble(parts[2]) : 1;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("--rounds needs FROM[:TO[:STEP]], not " + value + "!");
+		}
+
+		if (fromRounds < 0 || toRounds < fromRounds || stepRounds <= 0) {
+			throw new IllegalArgumentException("--rounds " + value + " is not an ascending range!");
+		}
+	}
+
+	/**
+	 * @return every round count in the range, in ascending order.
+	 */
+	public List<Double> getRounds() {
+		List<Double> rounds = new ArrayList<Double>();
+
+		// Counting steps rather than adding them up keeps rounding errors from
+		// accumulating, and rounding keeps them out of the file names.
+		for (int k = 0; fromRounds + k * stepRounds <= toRounds + 1e-9; k++) {
+			rounds.add(Math.round((fromRounds + k * stepRounds) * 1e9) / 1e9);
+		}
+
+		return rounds;
+	}
+
+	public List<String> getDigests() {
+		return digests;
+	}
+
+	public List<String> getGenerators() {
+		return generators;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public int getJobs() {
+		return jobs;
+	}
+
+	/**
+	 * @return the worker threads per density generator. Unless set, the
+	 *         processors are shared out between the concurrent jobs.
+	 */
+	public int getThreads() {
+		if (threads > 0) {
+			return threads;
+		}
+		return Math.max(1, Runtime.getRuntime().availableProcessors() / jobs);
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public WriterMode getMode() {
+		return mode;
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	public boolean isAnalyze() {
+		return analyze;
+	}
+
+	public boolean isAvalanche() {
+		return avalanche;
+	}
+
+	/**
+	 * @return the analyses selected, run on the worker threads of one job.
+	 */
+	public Analysis getAnalysis() {
+		return new Analysis(analyze, avalanche, getThreads());
+	}
+
+	/**
+	 * @return a cache over the output directory, or {@link DatasetCache#NONE}
+	 *         if caching is off. Each call creates a separate cache, so jobs
+	 *         should share the result of one call.
+	 */
+	public DatasetCache getCache() {
+		return cache ? new DatasetCache(directory, cacheBudget) : DatasetCache.NONE;
+	}
+
+	/**
+	 * @return how the data files of the run are written. Each call creates a
+	 *         separate cache, so jobs should share the result of one call.
+	 */
+	public RunSettings getSettings() {
+		return new RunSettings(directory, mode, format, getAnalysis(), getCache());
+	}
+
+	public Shard getShard() {
+		return shard;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public long getMessages() {
+		return messages;
+	}
+
+	public int getMessageLength() {
+		return messageLength;
+	}
+
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	public boolean isHelp() {
+		return help;
+	}
+}
@@ -0,0 +1,94 @@
+package com.golaszewski.hash_mechanic;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.generator.Generator;
+
+/**
+ * One dataset to generate: a generator run over a digest at a round count,
+ * written to a file and optionally analyzed or reused from a cache.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class Job {
+	private final Generator generator;
+	private final Supplier<? extends Digest> digests;
+	private final double nRounds;
+	private final RunSettings settings;
+	private final File output;
+
+	/**
+	 * @param generator
+	 *            - the generator. It should not be shared with other jobs.
+	 * @param digests
+	 *            - supplies identically configured instances of the digest.
+	 * @param nRounds
+	 *            - the round count the digests run, used to name the file.
+	 * @param settings
+	 *            - how the data file is written.
+	 */
+	public Job(Generator generator, Supplier<? extends Digest> digests, double nRounds, RunSettings settings) {
+		this.generator = generator;
+		this.digests = digests;
+		this.nRounds = nRounds;
+		this.settings = settings;
+		this.output = Driver.generateFile(generator, digests.get(), nRounds, settings);
+	}
+
+	/**
+	 * Generates the dataset.
+	 * 
+	 * @return the file that was written.
+	 */
+	public File run() {
+		return Driver.doTest(generator, digests, nRounds, settings);
+	}
+
+	/**
+	 * @return the exact size of the data file in bytes.
+	 */
+	public long getOutputLength() {
+		return settings.getFormat().getFileLength(Driver.createHeader(generator, digests.get(), nRounds));
+	}
+
+	/**
+	 * @return the number of hashes the job computes, which is its estimated
+	 *         cost.
+	 */
+	public long getHashCount() {
+		return generator.getHashCount(digests.get());
+	}
+
+	/**
+	 * @return the estimated memory held in buffers while the job runs.
+	 */
+	public long getBufferLength() {
+		Digest digest = digests.get();
+		return generator.getBufferLength(digest) + settings.getMode().getBufferLength(getOutputLength())
+				+ settings.getFormat().getBufferLength() + settings.getAnalysis().getBufferLength(generator, digest);
+	}
+
+	public Generator getGenerator() {
+		return generator;
+	}
+
+	public double getRounds() {
+		return nRounds;
+	}
+
+	public File getOutput() {
+		return output;
+	}
+
+	public RunSettings getSettings() {
+		return settings;
+	}
+
+	@Override
+	public String toString() {
+		return output.getPath();
+	}
+}
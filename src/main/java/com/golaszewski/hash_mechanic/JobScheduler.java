@@ -0,0 +1,148 @@
+package com.golaszewski.hash_mechanic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs jobs concurrently on a bounded pool. Jobs start in order of estimated
+ * cost, largest first, so the longest job is not left to run alone at the end.
+ * A job is only admitted while the buffers of all running jobs fit the memory
+ * budget; a job too large for the budget on its own runs once nothing else is
+ * running.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class JobScheduler {
+	/**
+	 * Orders jobs by hash count, then output length, largest first.
+	 */
+	public static final Comparator<Job> BY_COST = Comparator.comparingLong(Job::getHashCount)
+			.thenComparingLong(Job::getOutputLength).reversed();
+
+	private final int workers;
+	private final long memoryBudget;
+
+	// Admission state, guarded by this.
+	private int running;
+	private long memoryInUse;
+
+	/**
+	 * @param workers
+	 *            - the largest number of jobs running at once.
+	 * @param memoryBudget
+	 *            - the largest total of job buffers in bytes.
+	 */
+	public JobScheduler(int workers, long memoryBudget) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Need at least one worker, not " + workers + "!");
+		}
+		this.workers = workers;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Runs every job and waits for all of them to finish. A failing job does
+	 * not stop the others.
+	 * 
+	 * @param jobs
+	 *            - the jobs to run.
+	 * @return the files written, in the order of the given jobs.
+	 * @throws RuntimeException
+	 *             if any job failed, after all jobs have finished.
+	 */
+	public List<File> run(List<Job> jobs) throws InterruptedException {
+		List<Integer> pending = new LinkedList<Integer>();
+		for (int i = 0; i < jobs.size(); i++) {
+			pending.add(i);
+		}
+		pending.sort(Comparator.comparing(jobs::get, BY_COST));
+
+		List<Future<File>> futures = new ArrayList<Future<File>>(jobs.size());
+		for (int i = 0; i < jobs.size(); i++) {
+			futures.add(null);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+		try {
+			while (!pending.isEmpty()) {
+				int index = admit(jobs, pending);
+				Job job = jobs.get(index);
+				long memory = job.getBufferLength();
+
+				futures.set(index, pool.submit(() -> {
+					try {
+						return job.run();
+					} finally {
+						release(memory);
+					}
+				}));
+			}
+
+			List<File> files = new ArrayList<File>(jobs.size());
+			Throwable cause = null;
+			int failed = 0;
+
+			for (Future<File> future : futures) {
+				try {
+					files.add(future.get());
+				} catch (ExecutionException e) {
+					files.add(null);
+					if (failed++ == 0) {
+						cause = e.getCause();
+					} else {
+						// Keep the later failures with the first, so each is
+						// reported once and whole.
+						cause.addSuppressed(e.getCause());
+					}
+				}
+			}
+
+			if (failed > 0) {
+				throw new RuntimeException(failed + " of " + jobs.size() + " jobs failed!", cause);
+			}
+			return files;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Waits until the most costly pending job that fits can start, then takes
+	 * it off the pending list and reserves its memory.
+	 * 
+	 * @return the index of the admitted job.
+	 */
+	private synchronized int admit(List<Job> jobs, List<Integer> pending) throws InterruptedException {
+		while (true) {
+			if (running < workers) {
+				for (Iterator<Integer> it = pending.iterator(); it.hasNext();) {
+					int index = it.next();
+					long memory = jobs.get(index).getBufferLength();
+
+					if (running == 0 || memoryInUse + memory <= memoryBudget) {
+						it.remove();
+						running++;
+						memoryInUse += memory;
+						return index;
+					}
+				}
+			}
+			wait();
+		}
+	}
+
+	private synchronized void release(long memory) {
+		running--;
+		memoryInUse -= memory;
+		notifyAll();
+	}
+}
@@ -0,0 +1,78 @@
+package com.golaszewski.hash_mechanic;
+
+import java.io.File;
+
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+/**
+ * How the datasets of a run are written: where, through which writer, in
+ * which layout, with which analyses and against which cache. Every job of a
+ * run shares one instance.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class RunSettings {
+	/**
+	 * Streams raw files into the working directory, without analysis or
+	 * cache.
+	 */
+	public static final RunSettings DEFAULT = new RunSettings(new File("."), WriterMode.STREAM, OutputFormat.RAW,
+			Analysis.NONE, DatasetCache.NONE);
+
+	private final File directory;
+	private final WriterMode mode;
+	private final OutputFormat format;
+	private final Analysis analysis;
+	private final DatasetCache cache;
+
+	/**
+	 * @param directory
+	 *            - the directory to write the data files to.
+	 * @param mode
+	 *            - how the data files are written. {@link WriterMode#NONE}
+	 *            only analyzes the output.
+	 * @param format
+	 *            - the layout of the data files.
+	 * @param analysis
+	 *            - the analyses to run over the output.
+	 * @param cache
+	 *            - the datasets already generated, which are reused.
+	 */
+	public RunSettings(File directory, WriterMode mode, OutputFormat format, Analysis analysis, DatasetCache cache) {
+		this.directory = directory;
+		this.mode = mode;
+		this.format = format;
+		this.analysis = analysis;
+		this.cache = cache;
+	}
+
+	/**
+	 * Creates the default settings for another directory.
+	 */
+	public RunSettings(File directory) {
+		this(directory, WriterMode.STREAM, OutputFormat.RAW, Analysis.NONE, DatasetCache.NONE);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public WriterMode getMode() {
+		return mode;
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	public Analysis getAnalysis() {
+		return analysis;
+	}
+
+	public DatasetCache getCache() {
+		return cache;
+	}
+}
@@ -0,0 +1,173 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.generator.DensityGenerator;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * Selects the analyses run over a dataset as it is generated. Each report is
+ * printed and saved beside the data file: the {@link StreamStatistics} with a
+ * .stats extension, and the {@link AvalancheMatrix} of a density generator
+ * with a .sac extension. A shard also saves its statistics accumulator with a
+ * .sts extension, so that
+ * {@link com.golaszewski.hash_mechanic.shard.ShardMerger} can combine the
+ * accumulators and matrices of the shards into the reports of the whole
+ * dataset.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class Analysis {
+	/**
+	 * Runs no analysis.
+	 */
+	public static final Analysis NONE = new Analysis(false, false, 1);
+
+	/**
+	 * The extension of the statistics report.
+	 */
+	public static final String STATISTICS_EXTENSION = ".stats";
+
+	/**
+	 * The extension of the statistics accumulator saved by a shard.
+	 */
+	public static final String ACCUMULATOR_EXTENSION = ".sts";
+
+	/**
+	 * The extension of the avalanche matrix.
+	 */
+	public static final String AVALANCHE_EXTENSION = ".sac";
+
+	private final boolean statistics;
+	private final boolean avalanche;
+	private final int threads;
+
+	/**
+	 * @param statistics
+	 *            - whether to compute the {@link StreamStatistics}.
+	 * @param avalanche
+	 *            - whether to compute the {@link AvalancheMatrix}. Only
+	 *            density generators produce one.
+	 * @param threads
+	 *            - the worker threads of each analysis.
+	 */
+	public Analysis(boolean statistics, boolean avalanche, int threads) {
+		this.statistics = statistics;
+		this.avalanche = avalanche;
+		this.threads = threads;
+	}
+
+	/**
+	 * @return true if any analysis runs.
+	 */
+	public boolean isEnabled() {
+		return statistics || avalanche;
+	}
+
+	/**
+	 * Wraps a sink in the analyses that apply to a generator. Closing the
+	 * returned sink closes the wrapped one and saves the reports.
+	 * 
+	 * @param sink
+	 *            - the sink to pass the output on to.
+	 * @param generator
+	 *            - the generator producing the output.
+	 * @param digest
+	 *            - the hash function the output is generated from.
+	 * @param output
+	 *            - the data file, which names the reports.
+	 * @return a sink running the analyses, or the sink itself if none apply.
+	 */
+	public HashSink open(HashSink sink, Generator generator, Digest digest, File output) {
+		final StatisticsSink statisticsSink = statistics ? new StatisticsSink(sink, digest.getDigestSize(),
+				threads) : null;
+		final HashSink inner = statistics ? statisticsSink : sink;
+		final AvalancheSink avalancheSink = isAvalanche(generator) ? createAvalancheSink(inner,
+				(DensityGenerator) generator, digest) : null;
+		final HashSink outer = (avalancheSink != null) ? avalancheSink : inner;
+
+		if (outer == sink) {
+			return sink;
+		}
+
+		return new HashSink() {
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				outer.write(bytes, offset, length);
+			}
+
+			@Override
+			public void sync() throws IOException {
+				outer.sync();
+			}
+
+			public void close() throws IOException {
+				outer.close();
+
+				if (statisticsSink != null) {
+					String report = statisticsSink.getStatistics().getReport();
+					System.out.print(output.getPath() + ":" + System.lineSeparator() + report);
+					Files.write(new File(output.getPath() + STATISTICS_EXTENSION).toPath(), report.getBytes(
+							StandardCharsets.UTF_8));
+					if (!generator.getShard().isWhole()) {
+						statisticsSink.getStatistics().write(new File(output.getPath() + ACCUMULATOR_EXTENSION));
+					}
+				}
+				if (avalancheSink != null) {
+					AvalancheMatrix matrix = avalancheSink.getMatrix();
+					System.out.println(output.getPath() + ": " + matrix.getSummary());
+					matrix.write(new File(output.getPath() + AVALANCHE_EXTENSION));
+				}
+			}
+		};
+	}
+
+	/**
+	 * Estimates the memory held by the analyses of a generator.
+	 * 
+	 * @param generator
+	 *            - the generator producing the output.
+	 * @param digest
+	 *            - the hash function the output is generated from.
+	 * @return the buffer size in bytes.
+	 */
+	public long getBufferLength(Generator generator, Digest digest) {
+		long window = (threads > 1) ? 2L * threads + 1 : 1;
+		long length = 0;
+
+		if (statistics) {
+			length += window * StatisticsSink.BLOCK_SIZE;
+		}
+		if (isAvalanche(generator)) {
+			long matrix = 2L * Long.BYTES * DensityGenerator.getInputBits(digest) * digest.getDigestSize()
+					* Byte.SIZE;
+			length += window * AvalancheSink.BLOCK_RECORDS * digest.getDigestSize() + (threads + 1) * matrix;
+		}
+
+		return length;
+	}
+
+	/**
+	 * A shard samples its two-bit flips against the base and one-bit flips of
+	 * the whole output, which it hashes first.
+	 */
+	private AvalancheSink createAvalancheSink(HashSink sink, DensityGenerator generator, Digest digest) {
+		final int inputBits = DensityGenerator.getInputBits(digest);
+
+		if (generator.getShard().isWhole()) {
+			return new AvalancheSink(sink, digest.getDigestSize(), inputBits, threads);
+		}
+
+		return new AvalancheSink(sink, digest.getDigestSize(), inputBits, threads, generator.getShard().getFirst(
+				generator.getTotalHashCount(digest)), generator.hashSingles(digest));
+	}
+
+	private boolean isAvalanche(Generator generator) {
+		return avalanche && generator instanceof DensityGenerator;
+	}
+}
@@ -0,0 +1,323 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Counts, for every input bit and output bit of a hash function, how often
+ * flipping the input bit flips the output bit. Under the strict avalanche
+ * criterion every count is half the number of samples.
+ * <p>
+ * Each sample is the XOR of the hashes of two messages that differ in one
+ * input bit, packed into 64-bit words. Samples are bit-sliced: they are
+ * collected 64 at a time per input bit, each 64 x 64 block of bits is
+ * transposed so that a word holds one output bit of 64 samples, and a
+ * popcount adds that word to the count. Counts for different input bits are
+ * independent and addition commutes, so accumulators filled on different
+ * threads merge in any order.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class AvalancheMatrix {
+	private static final int MAGIC = 0x53414331;
+
+	private final int inputBits;
+	private final int outputBits;
+	private final int words;
+	private final long[] counts;
+	private final long[] samples;
+
+	/**
+	 * Samples not yet counted, in one block of 64 words per input bit and
+	 * output word.
+	 */
+	private final long[] pending;
+	private final int[] filled;
+
+	/**
+	 * @param inputBits
+	 *            - the number of bits in the message.
+	 * @param outputBits
+	 *            - the number of bits in the hash.
+	 */
+	public AvalancheMatrix(int inputBits, int outputBits) {
+		this.inputBits = inputBits;
+		this.outputBits = outputBits;
+		this.words = (outputBits + Long.SIZE - 1) / Long.SIZE;
+		this.counts = new long[inputBits * outputBits];
+		this.samples = new long[inputBits];
+		this.pending = new long[inputBits * words * Long.SIZE];
+		this.filled = new int[inputBits];
+	}
+
+	/**
+	 * Adds a sample for an input bit.
+	 * 
+	 * @param inputBit
+	 *            - the input bit that was flipped.
+	 * @param difference
+	 *            - the XOR of the two hashes, as packed by {@link #pack}.
+	 *            This input is not modified.
+	 * @param offset
+	 *            - the offset of the first word in the array.
+	 */
+	public void add(int inputBit, long[] difference, int offset) {
+		int row = filled[inputBit];
+		int block = inputBit * words * Long.SIZE;
+
+		for (int w = 0; w < words; w++) {
+			pending[block + w * Long.SIZE + row] = difference[offset + w];
+		}
+
+		samples[inputBit]++;
+		if (++filled[inputBit] == Long.SIZE) {
+			count(inputBit);
+		}
+	}
+
+	/**
+	 * Counts the samples still held for every input bit.
+	 */
+	public void flush() {
+		for (int inputBit = 0; inputBit < inputBits; inputBit++) {
+			if (filled[inputBit] > 0) {
+				count(inputBit);
+			}
+		}
+	}
+
+	/**
+	 * Adds the counts of another matrix to this one. Both are flushed first.
+	 * 
+	 * @param other
+	 *            - a matrix of the same dimensions.
+	 * @throws IllegalArgumentException
+	 *             if the dimensions differ.
+	 */
+	public void merge(AvalancheMatrix other) {
+		if (other.inputBits != inputBits || other.outputBits != outputBits) {
+			throw new IllegalArgumentException("Cannot merge a " + other.inputBits + " x " + other.outputBits
+					+ " matrix into a " + inputBits + " x " + outputBits + " matrix!");
+		}
+
+		flush();
+		other.flush();
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] += other.samples[i];
+		}
+	}
+
+	public int getInputBits() {
+		return inputBits;
+	}
+
+	public int getOutputBits() {
+		return outputBits;
+	}
+
+	/**
+	 * @return the number of samples added for an input bit.
+	 */
+	public long getSamples(int inputBit) {
+		return samples[inputBit];
+	}
+
+	/**
+	 * @return the number of samples in which flipping the input bit flipped
+	 *         the output bit. Call {@link #flush()} after the last sample.
+	 */
+	public long getCount(int inputBit, int outputBit) {
+		return counts[inputBit * outputBits + outputBit];
+	}
+
+	/**
+	 * @return the fraction of samples in which flipping the input bit flipped
+	 *         the output bit.
+	 */
+	public double getProbability(int inputBit, int outputBit) {
+		long n = samples[inputBit];
+		return (n == 0) ? 0 : getCount(inputBit, outputBit) / (double) n;
+	}
+
+	/**
+	 * @return the mean flip probability over the whole matrix.
+	 */
+	public double getMeanProbability() {
+		double sum = 0;
+		for (int inputBit = 0; inputBit < inputBits; inputBit++) {
+			for (int outputBit = 0; outputBit < outputBits; outputBit++) {
+				sum += getProbability(inputBit, outputBit);
+			}
+		}
+		return sum / counts.length;
+	}
+
+	/**
+	 * @return the largest distance of any flip probability from one half.
+	 */
+	public double getMaxBias() {
+		double max = 0;
+		for (int inputBit = 0; inputBit < inputBits; inputBit++) {
+			for (int outputBit = 0; outputBit < outputBits; outputBit++) {
+				max = Math.max(max, Math.abs(getProbability(inputBit, outputBit) - 0.5));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return a one line summary of the matrix.
+	 */
+	public String getSummary() {
+		return String.format("%d x %d avalanche matrix, mean flip probability %.6f, max bias %.6f", inputBits,
+				outputBits, getMeanProbability(), getMaxBias());
+	}
+
+	/**
+	 * Saves the matrix. The file holds a header with the dimensions, the
+	 * number of samples of each input bit, then the counts row by row. Counts
+	 * take two bytes each when they fit, and four otherwise.
+	 * 
+	 * @param file
+	 *            - the file to write. Any existing contents are replaced.
+	 */
+	public void write(File file) throws IOException {
+		flush();
+
+		long max = 0;
+		for (long n : samples) {
+			max = Math.max(max, n);
+		}
+		int width = (max <= 0xFFFF) ? 2 : 4;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(inputBits);
+			out.writeInt(outputBits);
+			out.writeByte(width);
+			for (long n : samples) {
+				out.writeLong(n);
+			}
+			for (long count : counts) {
+				if (width == 2) {
+					out.writeShort((int) count);
+				} else {
+					out.writeInt((int) count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads a matrix saved by {@link #write(File)}.
+	 * 
+	 * @param file
+	 *            - the file to read.
+	 * @return the matrix.
+	 */
+	public static AvalancheMatrix read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not an avalanche matrix!");
+			}
+
+			AvalancheMatrix matrix = new AvalancheMatrix(in.readInt(), in.readInt());
+			int width = in.readByte();
+
+			for (int i = 0; i < matrix.samples.length; i++) {
+				matrix.samples[i] = in.readLong();
+			}
+			for (int i = 0; i < matrix.counts.length; i++) {
+				matrix.counts[i] = (width == 2) ? in.readUnsignedShort() : in.readInt() & 0xFFFFFFFFL;
+			}
+
+			return matrix;
+		}
+	}
+
+	/**
+	 * Packs a hash into 64-bit words, most significant byte first, so that bit
+	 * k of the hash, numbered from the most significant bit of the first byte,
+	 * is bit 63 - k % 64 of word k / 64. The last word is padded with zeros.
+	 * 
+	 * @param bytes
+	 *            - the array holding the hash. This input is not modified.
+	 * @param offset
+	 *            - the offset of the hash in the array.
+	 * @param length
+	 *            - the size of the hash in bytes.
+	 * @param words
+	 *            - the array to write the words to.
+	 * @param wordOffset
+	 *            - the offset of the first word.
+	 */
+	public static void pack(byte[] bytes, int offset, int length, long[] words, int wordOffset) {
+		for (int i = 0; i < length; i += Long.BYTES) {
+			long word = 0;
+			for (int b = 0; b < Long.BYTES; b++) {
+				word <<= Byte.SIZE;
+				if (i + b < length) {
+					word |= bytes[offset + i + b] & 0xFF;
+				}
+			}
+			words[wordOffset + i / Long.BYTES] = word;
+		}
+	}
+
+	/**
+	 * Transposes the pending blocks of an input bit and adds the popcount of
+	 * each transposed word to the count of its output bit.
+	 */
+	private void count(int inputBit) {
+		int row = inputBit * outputBits;
+
+		for (int w = 0; w < words; w++) {
+			int block = (inputBit * words + w) * Long.SIZE;
+			transpose(pending, block);
+
+			int columns = Math.min(Long.SIZE, outputBits - w * Long.SIZE);
+			for (int c = 0; c < columns; c++) {
+				counts[row + w * Long.SIZE + c] += Long.bitCount(pending[block + c]);
+				pending[block + c] = 0;
+			}
+			for (int c = columns; c < Long.SIZE; c++) {
+				pending[block + c] = 0;
+			}
+		}
+
+		filled[inputBit] = 0;
+	}
+
+	/**
+	 * Transposes a 64 x 64 bit matrix in place, with rows held in consecutive
+	 * words and columns numbered from the most significant bit. Afterwards
+	 * word c holds what was column c. This is the recursive block swap from
+	 * Hacker's Delight, section 7-3.
+	 * 
+	 * @param rows
+	 *            - the array holding the matrix.
+	 * @param offset
+	 *            - the offset of the first row.
+	 */
+	static void transpose(long[] rows, int offset) {
+		long mask = 0x00000000FFFFFFFFL;
+
+		for (int j = 32; j != 0; j >>>= 1, mask ^= mask << j) {
+			for (int k = 0; k < Long.SIZE; k = (k + j + 1) & ~j) {
+				long t = (rows[offset + k] ^ (rows[offset + k + j] >>> j)) & mask;
+				rows[offset + k] ^= t;
+				rows[offset + k + j] ^= t << j;
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.golaszewski.hash_mechanic.generator.DensityGenerator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * A sink that builds the {@link AvalancheMatrix} of a digest from the output of
+ * a {@link DensityGenerator}, passing the output on to another sink. The base
+ * hash XOR each one-bit flip (i) is a sample for input bit i. Each two-bit flip
+ * (i, j) XOR the one-bit flip (i) is a sample for input bit j from a different
+ * base message, and XOR the one-bit flip (j) a sample for input bit i, so every
+ * input bit gets one sample per input bit without hashing anything twice.
+ * <p>
+ * The base and one-bit flips come first in the output and are kept. The
+ * two-bit flips are cut into blocks, which with more than one thread are
+ * sampled on a fork/join pool, each worker into its own matrix. Only a bounded
+ * window of blocks is held in memory.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class AvalancheSink implements HashSink {
+	/**
+	 * The number of records sampled by one task in parallel mode.
+	 */
+	public static final int BLOCK_RECORDS = 1 << 14;
+
+	private final HashSink sink;
+	private final int recordSize;
+	private final int inputBits;
+	private final int words;
+	private final int parallelism;
+	private final AvalancheMatrix matrix;
+	private final ForkJoinPool pool;
+	private final List<AvalancheMatrix> workerMatrices = new ArrayList<AvalancheMatrix>();
+	private final ThreadLocal<AvalancheMatrix> workers;
+	private final Deque<ForkJoinTask<?>> window = new ArrayDeque<ForkJoinTask<?>>();
+
+	/**
+	 * The base hash followed by each one-bit flip, packed into words.
+	 */
+	private final long[] singles;
+	private byte[] block;
+	private int filled;
+	private long record;
+
+	/**
+	 * Creates a sink that samples on the calling thread.
+	 * 
+	 * @param sink
+	 *            - receives the bytes after they are sampled. It is closed
+	 *            along with this sink.
+	 * @param recordSize
+	 *            - the size of each hash in bytes.
+	 * @param inputBits
+	 *            - the number of bits in each message, as given by
+	 *            {@link DensityGenerator#getInputBits}.
+	 */
+	public AvalancheSink(HashSink sink, int recordSize, int inputBits) {
+		this(sink, recordSize, inputBits, 1);
+	}
+
+	/**
+	 * Creates a sink that samples on a pool of worker threads.
+	 * 
+	 * @param sink
+	 *            - receives the bytes after they are sampled. It is closed
+	 *            along with this sink.
+	 * @param recordSize
+	 *            - the size of each hash in bytes.
+	 * @param inputBits
+	 *            - the number of bits in each message, as given by
+	 *            {@link DensityGenerator#getInputBits}.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 samples on the
+	 *            calling thread.
+	 */
+	public AvalancheSink(HashSink sink, int recordSize, int inputBits, int parallelism) {
+		this(sink, recordSize, inputBits, parallelism, 0, null);
+	}
+
+	/**
+	 * Creates a sink over a part of the output, such as one {@link Shard}, that
+	 * samples on a pool of worker threads. The matrices of consecutive parts
+	 * merge into the matrix of the whole output.
+	 * 
+	 * @param sink
+	 *            - receives the bytes after they are sampled. It is closed
+	 *            along with this sink.
+	 * @param recordSize
+	 *            - the size of each hash in bytes.
+	 * @param inputBits
+	 *            - the number of bits in each message, as given by
+	 *            {@link DensityGenerator#getInputBits}.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 samples on the
+	 *            calling thread.
+	 * @param firstRecord
+	 *            - the index in the whole output of the first record written.
+	 * @param singles
+	 *            - the base hash followed by each one-bit flip, as given by
+	 *            {@link DensityGenerator#hashSingles}, or null if the part
+	 *            starts with them. This input is not modified.
+	 */
+	public AvalancheSink(HashSink sink, int recordSize, int inputBits, int parallelism, long firstRecord,
+			byte[] singles) {
+		this.sink = sink;
+		this.recordSize = recordSize;
+		this.inputBits = inputBits;
+		this.words = (recordSize + Long.BYTES - 1) / Long.BYTES;
+		this.parallelism = parallelism;
+		this.matrix = new AvalancheMatrix(inputBits, recordSize * Byte.SIZE);
+		this.singles = new long[(1 + inputBits) * words];
+		this.block = new byte[BLOCK_RECORDS * recordSize];
+		this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+		this.workers = ThreadLocal.withInitial(() -> {
+			AvalancheMatrix worker = new AvalancheMatrix(inputBits, recordSize * Byte.SIZE);
+			synchronized (workerMatrices) {
+				workerMatrices.add(worker);
+			}
+			return worker;
+		});
+		this.record = firstRecord;
+
+		if (singles != null) {
+			for (int single = 0; single <= inputBits; single++) {
+				AvalancheMatrix.pack(singles, single * recordSize, recordSize, this.singles, single * words);
+			}
+		}
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		sink.write(bytes, offset, length);
+
+		while (length > 0) {
+			int count = Math.min(length, block.length - filled);
+			System.arraycopy(bytes, offset, block, filled, count);
+			filled += count;
+			offset += count;
+			length -= count;
+
+			if (filled == block.length) {
+				submit();
+			}
+		}
+	}
+
+	@Override
+	public void sync() throws IOException {
+		sink.sync();
+	}
+
+	/**
+	 * Samples the last block, merges the worker matrices and closes the sink
+	 * it passes bytes to.
+	 */
+	public void close() throws IOException {
+		try {
+			submit();
+
+			while (!window.isEmpty()) {
+				window.removeFirst().join();
+			}
+			for (AvalancheMatrix worker : workerMatrices) {
+				matrix.merge(worker);
+			}
+			matrix.flush();
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			sink.close();
+		}
+	}
+
+	/**
+	 * @return the avalanche matrix of everything written. It is complete once
+	 *         the sink is closed.
+	 */
+	public AvalancheMatrix getMatrix() {
+		return matrix;
+	}
+
+	/**
+	 * Keeps the base and one-bit flips at the start of the block, and hands the
+	 * two-bit flips after them to a worker.
+	 */
+	private void submit() {
+		int records = filled / recordSize;
+		int first = 0;
+		long[] difference = new long[words];
+
+		for (; first < records && record + first <= inputBits; first++) {
+			int single = (int) (record + first);
+			AvalancheMatrix.pack(block, first * recordSize, recordSize, singles, single * words);
+
+			if (single > 0) {
+				for (int w = 0; w < words; w++) {
+					difference[w] = singles[single * words + w] ^ singles[w];
+				}
+				matrix.add(single - 1, difference, 0);
+			}
+		}
+
+		if (first < records) {
+			final byte[] bytes = block;
+			final int from = first;
+			final long start = record + first;
+			final int count = records - first;
+
+			if (pool == null) {
+				sample(matrix, bytes, from, start, count);
+			} else {
+				if (window.size() >= parallelism * 2) {
+					window.removeFirst().join();
+				}
+				window.addLast(pool.submit(() -> sample(workers.get(), bytes, from, start, count)));
+				block = new byte[block.length];
+			}
+		}
+
+		record += records;
+		filled = 0;
+	}
+
+	/**
+	 * Samples a run of consecutive two-bit flip records.
+	 */
+	private void sample(AvalancheMatrix target, byte[] bytes, int from, long start, int count) {
+		long[] hash = new long[words];
+		long[] difference = new long[words];
+		int[] pair = new int[2];
+
+		DensityGenerator.unrank(start, inputBits, pair);
+
+		for (int r = 0; r < count; r++) {
+			AvalancheMatrix.pack(bytes, (from + r) * recordSize, recordSize, hash, 0);
+			int i = (1 + pair[0]) * words;
+			int j = (1 + pair[1]) * words;
+
+			for (int w = 0; w < words; w++) {
+				difference[w] = hash[w] ^ singles[i + w];
+			}
+			target.add(pair[1], difference, 0);
+
+			for (int w = 0; w < words; w++) {
+				difference[w] = hash[w] ^ singles[j + w];
+			}
+			target.add(pair[0], difference, 0);
+
+			DensityGenerator.advance(pair, inputBits);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * A sink that accumulates {@link StreamStatistics} over the hash outputs as
+ * they are generated, passing them on to another sink. With more than one
+ * thread, the output is cut into blocks that are accumulated on a fork/join
+ * pool, each into its own statistics, and the statistics are merged in order.
+ * Only a bounded window of blocks is held in memory.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class StatisticsSink implements HashSink {
+	/**
+	 * The number of bytes accumulated by one task in parallel mode, rounded
+	 * down to whole records.
+	 */
+	public static final int BLOCK_SIZE = 1 << 20;
+
+	private final HashSink sink;
+	private final StreamStatistics statistics;
+	private final int parallelism;
+	private final int blockSize;
+	private final ForkJoinPool pool;
+	private final Deque<ForkJoinTask<StreamStatistics>> window = new ArrayDeque<ForkJoinTask<StreamStatistics>>();
+	private byte[] block;
+	private int filled;
+
+	/**
+	 * Creates a sink that accumulates on the calling thread.
+	 * 
+	 * @param sink
+	 *            - receives the bytes after they are accumulated. It is closed
+	 *            along with this sink.
+	 * @param recordSize
+	 *            - the size of each hash record in bytes.
+	 */
+	public StatisticsSink(HashSink sink, int recordSize) {
+		this(sink, recordSize, 1);
+	}
+
+	/**
+	 * Creates a sink that accumulates on a pool of worker threads.
+	 * 
+	 * @param sink
+	 *            - receives the bytes after they are accumulated. It is closed
+	 *            along with this sink.
+	 * @param recordSize
+	 *            - the size of each hash record in bytes.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 accumulates on
+	 *            the calling thread.
+	 */
+	public StatisticsSink(HashSink sink, int recordSize, int parallelism) {
+		this.sink = sink;
+		this.statistics = new StreamStatistics(recordSize);
+		this.parallelism = parallelism;
+		this.blockSize = Math.max(1, BLOCK_SIZE / recordSize) * recordSize;
+		this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+		this.block = (parallelism > 1) ? new byte[blockSize] : null;
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		sink.write(bytes, offset, length);
+
+		if (pool == null) {
+			statistics.add(bytes, offset, length);
+			return;
+		}
+
+		while (length > 0) {
+			int count = Math.min(length, blockSize - filled);
+			System.arraycopy(bytes, offset, block, filled, count);
+			filled += count;
+			offset += count;
+			length -= count;
+
+			if (filled == blockSize) {
+				submit();
+			}
+		}
+	}
+
+	@Override
+	public void sync() throws IOException {
+		sink.sync();
+	}
+
+	/**
+	 * Accumulates the last block and closes the sink it passes bytes to.
+	 */
+	public void close() throws IOException {
+		try {
+			if (pool != null) {
+				submit();
+
+				while (!window.isEmpty()) {
+					statistics.merge(window.removeFirst().join());
+				}
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			sink.close();
+		}
+	}
+
+	/**
+	 * @return the statistics of everything written. They are complete once
+	 *         the sink is closed.
+	 */
+	public StreamStatistics getStatistics() {
+		return statistics;
+	}
+
+	private void submit() {
+		if (filled == 0) {
+			return;
+		}
+		if (window.size() >= parallelism * 2) {
+			statistics.merge(window.removeFirst().join());
+		}
+
+		final byte[] bytes = block;
+		final int length = filled;
+
+		window.addLast(pool.submit(() -> {
+			StreamStatistics part = new StreamStatistics(statistics.getRecordSize());
+			part.add(bytes, 0, length);
+			return part;
+		}));
+
+		block = new byte[blockSize];
+		filled = 0;
+	}
+}
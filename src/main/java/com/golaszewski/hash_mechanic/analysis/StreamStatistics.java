@@ -0,0 +1,392 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Accumulates randomness statistics over a stream of fixed-size hash records,
+ * one pass and in constant memory. The stream is read as bits from the most
+ * significant bit of each byte, and computes:
+ * <ul>
+ * <li>the frequency (monobit) test,</li>
+ * <li>the runs test,</li>
+ * <li>the bias of each output bit, over all records,</li>
+ * <li>the chi-square test on byte values,</li>
+ * <li>the serial correlation of consecutive bytes.</li>
+ * </ul>
+ * Each byte costs one counter increment per position in the record plus the
+ * terms that pair it with the byte before. Everything else is derived from the
+ * counts when a result is asked for. Accumulators over consecutive parts of a
+ * stream merge into the accumulator of the whole, so parts can be accumulated
+ * on separate threads or machines.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class StreamStatistics {
+	private static final int MAGIC = 0x53545331;
+
+	private final int recordSize;
+
+	/**
+	 * The count of each byte value at each position in the record, indexed by
+	 * position * 256 + value.
+	 */
+	private final long[] counts;
+	private long bytes;
+	private int first = -1;
+	private int last = -1;
+
+	/**
+	 * Bit transitions between the last bit of each byte and the first bit of
+	 * the next.
+	 */
+	private long crossings;
+
+	/**
+	 * The sum of the products of each byte with the next.
+	 */
+	private long products;
+
+	/**
+	 * @param recordSize
+	 *            - the size of each hash record in bytes.
+	 */
+	public StreamStatistics(int recordSize) {
+		this.recordSize = recordSize;
+		this.counts = new long[recordSize * 256];
+	}
+
+	/**
+	 * Adds the next bytes of the stream. Records may be split across calls.
+	 * 
+	 * @param bytes
+	 *            - the array holding the bytes. This input is not modified.
+	 * @param offset
+	 *            - the offset into the array.
+	 * @param length
+	 *            - the number of bytes to add.
+	 */
+	public void add(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			return;
+		}
+
+		int position = (int) (this.bytes % recordSize) * 256;
+		int previous = last;
+		int end = offset + length;
+
+		if (previous < 0) {
+			previous = first = bytes[offset] & 0xff;
+			counts[position + previous]++;
+			position = (position + 256) % counts.length;
+			offset++;
+		}
+
+		for (int i = offset; i < end; i++) {
+			int value = bytes[i] & 0xff;
+			counts[position + value]++;
+			products += previous * value;
+			crossings += (previous ^ (value >>> 7)) & 1;
+			previous = value;
+
+			position += 256;
+			if (position == counts.length) {
+				position = 0;
+			}
+		}
+
+		last = previous;
+		this.bytes += length;
+	}
+
+	/**
+	 * Appends the statistics of the part of the stream that immediately
+	 * follows this one.
+	 * 
+	 * @param next
+	 *            - the statistics of the following part. This input is not
+	 *            modified.
+	 * @throws IllegalArgumentException
+	 *             if the record sizes differ.
+	 * @throws IllegalStateException
+	 *             if this part does not end on a record boundary.
+	 */
+	public void merge(StreamStatistics next) {
+		if (next.recordSize != recordSize) {
+			throw new IllegalArgumentException("Cannot merge records of " + next.recordSize + " bytes into "
+					+ recordSize + "!");
+		}
+		if (next.bytes == 0) {
+			return;
+		}
+		if (bytes % recordSize != 0) {
+			throw new IllegalStateException("Cannot merge after a partial record!");
+		}
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += next.counts[i];
+		}
+
+		if (bytes == 0) {
+			first = next.first;
+		} else {
+			products += last * next.first;
+			crossings += (last ^ (next.first >>> 7)) & 1;
+		}
+
+		products += next.products;
+		crossings += next.crossings;
+		last = next.last;
+		bytes += next.bytes;
+	}
+
+	/**
+	 * Saves the accumulator, so that it can be merged with those of the other
+	 * parts of the stream later. The file holds a header with the record size,
+	 * the byte count, the first and last bytes, the crossings and products,
+	 * then the counts.
+	 * 
+	 * @param file
+	 *            - the file to write. Any existing contents are replaced.
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(recordSize);
+			out.writeLong(bytes);
+			out.writeInt(first);
+			out.writeInt(last);
+			out.writeLong(crossings);
+			out.writeLong(products);
+			for (long count : counts) {
+				out.writeLong(count);
+			}
+		}
+	}
+
+	/**
+	 * Loads an accumulator saved by {@link #write(File)}.
+	 * 
+	 * @param file
+	 *            - the file to read.
+	 * @return the accumulator.
+	 */
+	public static StreamStatistics read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a stream statistics accumulator!");
+			}
+
+			StreamStatistics statistics = new StreamStatistics(in.readInt());
+			statistics.bytes = in.readLong();
+			statistics.first = in.readInt();
+			statistics.last = in.readInt();
+			statistics.crossings = in.readLong();
+			statistics.products = in.readLong();
+
+			for (int i = 0; i < statistics.counts.length; i++) {
+				statistics.counts[i] = in.readLong();
+			}
+
+			return statistics;
+		}
+	}
+
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getBits() {
+		return bytes * Byte.SIZE;
+	}
+
+	/**
+	 * @return the number of one bits.
+	 */
+	public long getOnes() {
+		long ones = 0;
+		for (int i = 0; i < counts.length; i++) {
+			ones += counts[i] * Integer.bitCount(i & 0xff);
+		}
+		return ones;
+	}
+
+	/**
+	 * @return the p-value of the frequency (monobit) test, NIST SP 800-22
+	 *         section 2.1.
+	 */
+	public double getMonobitPValue() {
+		double n = getBits();
+		double s = Math.abs(2.0 * getOnes() - n) / Math.sqrt(n);
+		return Erf.erfc(s / Math.sqrt(2));
+	}
+
+	/**
+	 * @return the number of runs of identical bits.
+	 */
+	public long getRuns() {
+		if (bytes == 0) {
+			return 0;
+		}
+
+		long transitions = crossings;
+		for (int i = 0; i < counts.length; i++) {
+			int value = i & 0xff;
+			transitions += counts[i] * Integer.bitCount((value ^ (value >>> 1)) & 0x7f);
+		}
+		return transitions + 1;
+	}
+
+	/**
+	 * @return the p-value of the runs test, NIST SP 800-22 section 2.3. The
+	 *         test does not apply, and the p-value is zero, when the
+	 *         frequency of ones is too far from a half.
+	 */
+	public double getRunsPValue() {
+		double n = getBits();
+		double pi = getOnes() / n;
+
+		if (Math.abs(pi - 0.5) >= 2 / Math.sqrt(n)) {
+			return 0;
+		}
+
+		double expected = 2 * n * pi * (1 - pi);
+		return Erf.erfc(Math.abs(getRuns() - expected) / (2 * Math.sqrt(2 * n) * pi * (1 - pi)));
+	}
+
+	/**
+	 * Computes the frequency of ones at one bit of the record.
+	 * 
+	 * @param bit
+	 *            - the bit of the record, numbered from the most significant
+	 *            bit of the first byte.
+	 * @return the fraction of records with the bit set, minus one half.
+	 */
+	public double getBitBias(int bit) {
+		long ones = 0;
+		long total = 0;
+		int base = (bit / Byte.SIZE) * 256;
+		int mask = 1 << (Byte.SIZE - bit % Byte.SIZE - 1);
+
+		for (int value = 0; value < 256; value++) {
+			total += counts[base + value];
+			if ((value & mask) != 0) {
+				ones += counts[base + value];
+			}
+		}
+
+		return (total == 0) ? 0 : ones / (double) total - 0.5;
+	}
+
+	/**
+	 * @return the bit of the record with the largest bias in either direction.
+	 */
+	public int getWorstBit() {
+		int worst = 0;
+		for (int bit = 1; bit < recordSize * Byte.SIZE; bit++) {
+			if (Math.abs(getBitBias(bit)) > Math.abs(getBitBias(worst))) {
+				worst = bit;
+			}
+		}
+		return worst;
+	}
+
+	/**
+	 * @return the p-value of the chi-square test that every bit of the record
+	 *         is unbiased, summing the squared z-score of each bit.
+	 */
+	public double getBitBiasPValue() {
+		int bits = recordSize * Byte.SIZE;
+		double records = Math.ceil(bytes / (double) recordSize);
+		double statistic = 0;
+
+		for (int bit = 0; bit < bits; bit++) {
+			double z = 2 * getBitBias(bit) * Math.sqrt(records);
+			statistic += z * z;
+		}
+
+		return Gamma.regularizedGammaQ(bits / 2.0, statistic / 2);
+	}
+
+	/**
+	 * @return the chi-square statistic of the byte values against a uniform
+	 *         distribution.
+	 */
+	public double getByteChiSquare() {
+		double expected = bytes / 256.0;
+		double statistic = 0;
+
+		for (int value = 0; value < 256; value++) {
+			long observed = 0;
+			for (int position = value; position < counts.length; position += 256) {
+				observed += counts[position];
+			}
+			statistic += (observed - expected) * (observed - expected) / expected;
+		}
+
+		return statistic;
+	}
+
+	/**
+	 * @return the p-value of the byte chi-square statistic, with 255 degrees
+	 *         of freedom.
+	 */
+	public double getByteChiSquarePValue() {
+		return Gamma.regularizedGammaQ(255 / 2.0, getByteChiSquare() / 2);
+	}
+
+	/**
+	 * @return the serial correlation coefficient of each byte with the next,
+	 *         wrapping from the last byte to the first. Random data gives
+	 *         values close to zero.
+	 */
+	public double getSerialCorrelation() {
+		double sum = 0;
+		double squares = 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			int value = i & 0xff;
+			sum += (double) counts[i] * value;
+			squares += (double) counts[i] * value * value;
+		}
+
+		double n = bytes;
+		double numerator = n * (products + (double) last * first) - sum * sum;
+		double denominator = n * squares - sum * sum;
+		return (denominator == 0) ? 0 : numerator / denominator;
+	}
+
+	/**
+	 * @return one line per test, giving its statistic and p-value.
+	 */
+	public String getReport() {
+		int worst = getWorstBit();
+		StringBuilder report = new StringBuilder();
+
+		report.append(String.format("%-14s%d records, %d bytes%n", "length", (bytes + recordSize - 1) / recordSize,
+				bytes));
+		report.append(String.format("%-14s%.6f ones, p = %.6f%n", "monobit", getOnes() / (double) getBits(),
+				getMonobitPValue()));
+		report.append(String.format("%-14s%d runs, p = %.6f%n", "runs", getRuns(), getRunsPValue()));
+		report.append(String.format("%-14sworst bit %d at %+.6f, p = %.6f%n", "bit bias", worst, getBitBias(worst),
+				getBitBiasPValue()));
+		report.append(String.format("%-14s%.2f, p = %.6f%n", "byte chi2", getByteChiSquare(),
+				getByteChiSquarePValue()));
+		report.append(String.format("%-14sr = %+.6f%n", "serial corr", getSerialCorrelation()));
+
+		return report.toString();
+	}
+}
@@ -0,0 +1,319 @@
+package com.golaszewski.hash_mechanic.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.generator.Checkpoint;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+
+/**
+ * Remembers the datasets already generated in a directory, so a run can reuse
+ * a file instead of generating it again. Each dataset is keyed by everything
+ * that determines its contents: the generator, its shard and its input count,
+ * the digest, its round count and its hash of the empty message, the output
+ * format and {@link #VERSION}. A manifest in the directory records the key, size and
+ * CRC32C checksum of each file, and a file is only reused after its size and
+ * checksum are verified. When the files in the manifest exceed the disk
+ * budget, the least recently used are deleted.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class DatasetCache {
+	/**
+	 * The version of the dataset contents. Bump it whenever a change to a
+	 * generator or digest changes the bytes it produces, so older files are
+	 * generated again.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The name of the manifest in the cache directory.
+	 */
+	public static final String MANIFEST = "hash-mechanic.manifest";
+
+	/**
+	 * A cache that never reuses anything.
+	 */
+	public static final DatasetCache NONE = new DatasetCache(null, Long.MAX_VALUE);
+
+	private static final String HEADER = "# hash-mechanic dataset cache, version " + VERSION;
+
+	private final File directory;
+	private final long budget;
+	private Map<String, Entry> entries;
+
+	/**
+	 * Creates a cache over a directory. The manifest is read when the cache is
+	 * first used.
+	 * 
+	 * @param directory
+	 *            - the directory holding the data files.
+	 * @param budget
+	 *            - the most bytes the cached files may take up.
+	 */
+	public DatasetCache(File directory, long budget) {
+		this.directory = directory;
+		this.budget = budget;
+	}
+
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Builds the key of the dataset a generator produces for a digest.
+	 * 
+	 * @param digest
+	 *            - the digest. It is reset.
+	 * @param nRounds
+	 *            - the round count of the digest.
+	 * @param format
+	 *            - the layout of the data file.
+	 * @return the key.
+	 */
+	public static String createKey(Generator generator, Digest digest, double nRounds, OutputFormat format) {
+		return "v" + VERSION + " " + generator.getShard().name(generator.getName()) + " "
+				+ generator.getHashCount(digest) + " " + digest.getAlgorithmName() + " " + nRounds + " "
+				+ Checkpoint.fingerprint(digest) + " " + format;
+	}
+
+	/**
+	 * Checks whether a data file holds the dataset with the given key. An
+	 * entry whose file no longer matches its size and checksum is dropped.
+	 * 
+	 * @param key
+	 *            - the key of the dataset.
+	 * @param output
+	 *            - the data file.
+	 * @return true if the file can be reused.
+	 */
+	public boolean lookup(String key, File output) throws IOException {
+		Entry entry;
+
+		synchronized (this) {
+			if (!isEnabled()) {
+				return false;
+			}
+
+			entry = getEntries().get(key);
+			if (entry == null || !entry.name.equals(output.getName())) {
+				return false;
+			}
+		}
+
+		// The checksum is read outside the lock so that concurrent jobs can
+		// verify their files at the same time.
+		boolean valid = output.length() == entry.length && checksum(output) == entry.checksum;
+
+		synchronized (this) {
+			if (getEntries().get(key) != entry) {
+				return false;
+			}
+
+			if (valid) {
+				entry.used = System.currentTimeMillis();
+			} else {
+				System.out.println("Discarding cached " + output + ", its contents have changed.");
+				entries.remove(key);
+			}
+
+			save();
+			return valid;
+		}
+	}
+
+	/**
+	 * Records a complete data file, replacing any entry for the same file,
+	 * and evicts other files if the budget is exceeded.
+	 * 
+	 * @param key
+	 *            - the key of the dataset.
+	 * @param output
+	 *            - the data file, inside the cache directory.
+	 */
+	public void put(String key, File output) throws IOException {
+		if (!isEnabled()) {
+			return;
+		}
+
+		Entry entry = new Entry(output.getName(), output.length(), checksum(output), System.currentTimeMillis());
+
+		synchronized (this) {
+			getEntries().values().removeIf(other -> other.name.equals(entry.name));
+			entries.put(key, entry);
+			evict(key);
+			save();
+		}
+	}
+
+	/**
+	 * @return the total size of the cached files in bytes.
+	 */
+	public synchronized long getSize() throws IOException {
+		if (!isEnabled()) {
+			return 0;
+		}
+
+		long size = 0;
+		for (Entry entry : getEntries().values()) {
+			size += entry.length;
+		}
+		return size;
+	}
+
+	/**
+	 * Deletes the least recently used files until the cache fits its budget.
+	 * The newly added file is kept even if it alone exceeds the budget.
+	 */
+	private void evict(String keep) {
+		long size = 0;
+		for (Entry entry : entries.values()) {
+			size += entry.length;
+		}
+
+		List<Map.Entry<String, Entry>> oldest = new ArrayList<>(entries.entrySet());
+		oldest.sort(Comparator.comparingLong(e -> e.getValue().used));
+
+		for (Map.Entry<String, Entry> e : oldest) {
+			if (size <= budget) {
+				break;
+			}
+			if (e.getKey().equals(keep)) {
+				continue;
+			}
+
+			File file = new File(directory, e.getValue().name);
+			System.out.println("Evicting " + file + " from the cache.");
+			file.delete();
+			entries.remove(e.getKey());
+			size -= e.getValue().length;
+		}
+	}
+
+	/**
+	 * Reads the manifest the first time it is needed. Entries whose files
+	 * have gone are dropped.
+	 */
+	private Map<String, Entry> getEntries() throws IOException {
+		if (entries != null) {
+			return entries;
+		}
+
+		entries = new LinkedHashMap<>();
+		File manifest = new File(directory, MANIFEST);
+		if (!manifest.exists()) {
+			return entries;
+		}
+
+		try (BufferedReader in = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+			String line = in.readLine();
+			if (!HEADER.equals(line)) {
+				System.out.println("Ignoring " + manifest + " from another version.");
+				return entries;
+			}
+
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t", 5);
+				if (fields.length != 5) {
+					throw new IOException("Malformed line in " + manifest + ": " + line);
+				}
+
+				Entry entry;
+				try {
+					entry = new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2], 16), Long
+							.parseLong(fields[3]));
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed line in " + manifest + ": " + line, e);
+				}
+
+				if (new File(directory, entry.name).exists()) {
+					entries.put(fields[4], entry);
+				}
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Replaces the manifest atomically, so a crash leaves either the old or
+	 * the new one.
+	 */
+	private void save() throws IOException {
+		File manifest = new File(directory, MANIFEST);
+		File temp = new File(directory, MANIFEST + ".tmp");
+
+		try (FileOutputStream stream = new FileOutputStream(temp)) {
+			Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+			out.write(HEADER + "\n");
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				Entry entry = e.getValue();
+				out.write(entry.name + "\t" + entry.length + "\t" + Long.toHexString(entry.checksum) + "\t"
+						+ entry.used + "\t" + e.getKey() + "\n");
+			}
+			out.flush();
+			stream.getFD().sync();
+		}
+
+		Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Computes the CRC32C checksum of a file.
+	 * 
+	 * @param file
+	 *            - the file to read.
+	 * @return the checksum.
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32C crc = new CRC32C();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * A cached data file.
+	 */
+	private static class Entry {
+		private final String name;
+		private final long length;
+		private final long checksum;
+		private long used;
+
+		private Entry(String name, long length, long checksum, long used) {
+			this.name = name;
+			this.length = length;
+			this.checksum = checksum;
+			this.used = used;
+		}
+	}
+}
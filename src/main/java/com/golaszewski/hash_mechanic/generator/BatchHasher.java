@@ -0,0 +1,150 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+
+/**
+ * Hashes runs of consecutive output records of a density generator with a
+ * batch digest. Each lane gets a copy of the base message with the record's
+ * bits flipped, and every batch of lanes is hashed in one call.
+ * 
+ * As in the {@link MidstateHasher}, blocks before the first flipped bit are
+ * those of the base message, and for a pair (i, j) with j in a later block than
+ * i, the blocks before j's are shared by the whole row i. Consecutive lanes
+ * that share their first blocks are batched together and start from the
+ * cached chain value after those blocks instead of from the IV.
+ * 
+ * @author Ennis Golaszewski
+ */
+class BatchHasher {
+	/**
+	 * The number of messages hashed per batch.
+	 */
+	static final int LANES = 64;
+
+	private final BatchDigest batch;
+	private final byte[] base;
+	private final int inputBits;
+	private final byte[] messages;
+	private final int blockSize;
+
+	// Chain value after the first k blocks of the base message. Entry 0 is
+	// null, for the IV.
+	private final int[][] baseChains;
+
+	// Chain value after the first k blocks of the base message with bit row
+	// flipped, computed when first needed.
+	private final int[][] rowChains;
+	private final byte[] rowMessage;
+	private int row = -1;
+
+	/**
+	 * @param batch
+	 *            - the batch hash function. It is used exclusively by this
+	 *            hasher.
+	 * @param base
+	 *            - the base message. This input is not modified.
+	 */
+	BatchHasher(BatchDigest batch, byte[] base) {
+		this.batch = batch;
+		this.base = base.clone();
+		this.inputBits = base.length * Byte.SIZE;
+		this.messages = new byte[batch.getLanes() * base.length];
+		this.blockSize = batch.getBlockSize();
+		this.baseChains = new int[Math.max(1, (base.length - 1) / blockSize + 1)][];
+		this.rowChains = new int[baseChains.length][];
+		this.rowMessage = base.clone();
+
+		for (int k = 1; k < baseChains.length; k++) {
+			baseChains[k] = batch.chain(base, 0, k);
+		}
+	}
+
+	/**
+	 * Hashes consecutive output records back to back.
+	 * 
+	 * @param pair
+	 *            - the bits flipped for the first record, as set by
+	 *            {@link DensityGenerator#unrank}. On return it holds the bits
+	 *            of the record after the last one hashed.
+	 * @param count
+	 *            - the number of records to hash.
+	 * @param out
+	 *            - the array to write the hashes to.
+	 * @param outOff
+	 *            - the offset into the output array.
+	 */
+	void hash(int[] pair, int count, byte[] out, int outOff) {
+		while (count > 0) {
+			int prefix = prefixBlocks(pair);
+			int[] chain = chain(pair, prefix);
+			int n = 0;
+
+			do {
+				int offset = n * base.length;
+				System.arraycopy(base, 0, messages, offset, base.length);
+				flip(offset, pair[0]);
+				flip(offset, pair[1]);
+				DensityGenerator.advance(pair, inputBits);
+				n++;
+			} while (n < count && n < batch.getLanes() && prefixBlocks(pair) == prefix
+					&& chain(pair, prefix) == chain);
+
+			batch.digest(chain, prefix, messages, 0, base.length, n, out, outOff);
+			outOff += n * batch.getDigestSize();
+			count -= n;
+		}
+	}
+
+	/**
+	 * Counts the blocks a record shares with the base message or with the
+	 * other records of its row.
+	 */
+	private int prefixBlocks(int[] pair) {
+		if (pair[0] < 0) {
+			return 0;
+		}
+		if (pair[1] >= 0 && blockOf(pair[1]) > blockOf(pair[0])) {
+			return blockOf(pair[1]);
+		}
+		return blockOf(pair[0]);
+	}
+
+	/**
+	 * Finds the chain value a record starts from after its shared blocks.
+	 */
+	private int[] chain(int[] pair, int prefix) {
+		if (prefix == 0 || blockOf(pair[0]) == prefix) {
+			return baseChains[prefix];
+		}
+
+		if (row != pair[0]) {
+			if (row >= 0) {
+				Generator.flipBit(rowMessage, row);
+			}
+			row = pair[0];
+			Generator.flipBit(rowMessage, row);
+			for (int k = 0; k < rowChains.length; k++) {
+				rowChains[k] = null;
+			}
+		}
+		if (rowChains[prefix] == null) {
+			rowChains[prefix] = batch.chain(rowMessage, 0, prefix);
+		}
+
+		return rowChains[prefix];
+	}
+
+	private int blockOf(int bit) {
+		return bit / Byte.SIZE / blockSize;
+	}
+
+	/**
+	 * Flips a bit of the message at an offset, numbered as in
+	 * {@link Generator#flipBit}. Negative positions are ignored.
+	 */
+	private void flip(int offset, int position) {
+		if (position >= 0) {
+			messages[offset + position / Byte.SIZE] ^= 1 << (Byte.SIZE - (position % Byte.SIZE) - 1);
+		}
+	}
+}
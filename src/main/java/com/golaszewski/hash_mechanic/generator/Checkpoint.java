@@ -0,0 +1,223 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Hex;
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * Records how far a generator has got through a data file, so that a run that
+ * dies can resume where it left off. A checkpoint holds the number of records
+ * written and any state the generator needs to continue, such as the current
+ * chaining hash. It is saved next to the data file, only after the data it
+ * covers has been forced to storage, so the file always holds at least the
+ * bytes the checkpoint claims.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class Checkpoint {
+	/**
+	 * The default time between saves, in seconds.
+	 */
+	public static final long DEFAULT_PERIOD = 60;
+
+	/**
+	 * A checkpoint that starts from the beginning and is never saved.
+	 */
+	public static final Checkpoint NONE = new Checkpoint(null, null, 1, Long.MAX_VALUE);
+
+	private static final int MAGIC = 0x484d434b;
+
+	private final File file;
+	private final String key;
+	private final int recordSize;
+	private final long period;
+	private long record;
+	private byte[] state = new byte[0];
+	private long saved = System.nanoTime();
+
+	/**
+	 * Creates a checkpoint for a data file, saved every
+	 * {@link #DEFAULT_PERIOD} seconds.
+	 * 
+	 * @param output
+	 *            - the data file being written.
+	 * @param generator
+	 *            - the generator writing it.
+	 * @param digest
+	 *            - the hash function it is generated from. It is reset.
+	 */
+	public Checkpoint(File output, Generator generator, Digest digest) {
+		this(output, generator, digest, DEFAULT_PERIOD);
+	}
+
+	/**
+	 * Creates a checkpoint for a data file.
+	 * 
+	 * @param output
+	 *            - the data file being written.
+	 * @param generator
+	 *            - the generator writing it.
+	 * @param digest
+	 *            - the hash function it is generated from. It is reset.
+	 * @param period
+	 *            - the least number of seconds between saves. Zero saves at
+	 *            every opportunity.
+	 */
+	public Checkpoint(File output, Generator generator, Digest digest, long period) {
+		this(new File(output.getPath() + ".checkpoint"), generator.getName() + " " + digest.getAlgorithmName() + " "
+				+ fingerprint(digest) + " " + generator.getOutputLength(digest), digest.getDigestSize(),
+				TimeUnit.SECONDS.toNanos(period));
+	}
+
+	private Checkpoint(File file, String key, int recordSize, long period) {
+		this.file = file;
+		this.key = key;
+		this.recordSize = recordSize;
+		this.period = period;
+	}
+
+	/**
+	 * Identifies the configuration of a digest by its hash of the empty
+	 * message, since reduced round digests share their algorithm name.
+	 * 
+	 * @param digest
+	 *            - the digest. It is reset.
+	 * @return the hash in hex.
+	 */
+	public static String fingerprint(Digest digest) {
+		byte[] hash = new byte[digest.getDigestSize()];
+		digest.reset();
+		digest.doFinal(hash, 0);
+		return Hex.encodeHexString(hash);
+	}
+
+	/**
+	 * Reads the saved checkpoint, if there is one for the same generator and
+	 * digest and the data file still holds the bytes it covers. Otherwise the
+	 * checkpoint starts from the beginning.
+	 * 
+	 * @param output
+	 *            - the data file being written.
+	 * @return true if the run resumes from a saved checkpoint.
+	 */
+	public boolean load(File output) throws IOException {
+		if (file == null || !file.exists()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MAGIC || !key.equals(in.readUTF())) {
+				System.out.println("Ignoring checkpoint " + file + " from another run.");
+				return false;
+			}
+
+			long record = in.readLong();
+			byte[] state = new byte[in.readInt()];
+			in.readFully(state);
+
+			if (output.length() < record * recordSize) {
+				System.out.println("Ignoring checkpoint " + file + " past the end of " + output + ".");
+				return false;
+			}
+
+			this.record = record;
+			this.state = state;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the number of records written when the checkpoint was saved.
+	 */
+	public long getRecord() {
+		return record;
+	}
+
+	/**
+	 * @return the number of bytes written when the checkpoint was saved.
+	 */
+	public long getOffset() {
+		return record * recordSize;
+	}
+
+	/**
+	 * @return the generator state saved with the checkpoint, empty if there is
+	 *         none.
+	 */
+	public byte[] getState() {
+		return state;
+	}
+
+	/**
+	 * Saves the checkpoint if the period has passed since the last save.
+	 * Generators call this wherever they could resume from.
+	 * 
+	 * @param sink
+	 *            - the sink the records were written to.
+	 * @param record
+	 *            - the number of records written so far.
+	 * @param state
+	 *            - the state needed to continue, or null if there is none.
+	 *            This input is not modified.
+	 */
+	public void update(HashSink sink, long record, byte[] state) throws IOException {
+		if (file != null && System.nanoTime() - saved >= period) {
+			save(sink, record, state);
+		}
+	}
+
+	/**
+	 * Forces the sink to storage and then saves the checkpoint. The new
+	 * checkpoint replaces the old one atomically.
+	 * 
+	 * @param sink
+	 *            - the sink the records were written to.
+	 * @param record
+	 *            - the number of records written so far.
+	 * @param state
+	 *            - the state needed to continue, or null if there is none.
+	 *            This input is not modified.
+	 */
+	public void save(HashSink sink, long record, byte[] state) throws IOException {
+		sink.sync();
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (FileOutputStream stream = new FileOutputStream(temp)) {
+			DataOutputStream out = new DataOutputStream(stream);
+			out.writeInt(MAGIC);
+			out.writeUTF(key);
+			out.writeLong(record);
+			out.writeInt(state == null ? 0 : state.length);
+			if (state != null) {
+				out.write(state);
+			}
+			out.flush();
+			stream.getFD().sync();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		saved = System.nanoTime();
+	}
+
+	/**
+	 * Removes the saved checkpoint once the data file is complete.
+	 */
+	public void delete() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+}
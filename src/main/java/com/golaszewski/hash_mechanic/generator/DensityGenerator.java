@@ -0,0 +1,192 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import org.apache.commons.math3.util.ArithmeticUtils;
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+
+/**
+ * Hashes a constant base message, every message one bit flip away from it and
+ * every message two bit flips away from it, in that order. Two-bit flips (i, j)
+ * are ordered by i and then by j, with i < j. A sharded generator produces
+ * only its {@link Shard} of that sequence.
+ * 
+ * @author Ennis Golaszewski
+ */
+public abstract class DensityGenerator extends SlicedGenerator {
+	private final byte base;
+
+	/**
+	 * @param base
+	 *            - the value of every byte of the base message.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 hashes on the
+	 *            calling thread.
+	 */
+	protected DensityGenerator(byte base, int parallelism) {
+		this(base, parallelism, Shard.WHOLE);
+	}
+
+	/**
+	 * @param base
+	 *            - the value of every byte of the base message.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 hashes on the
+	 *            calling thread.
+	 * @param shard
+	 *            - the part of the output to generate.
+	 */
+	protected DensityGenerator(byte base, int parallelism, Shard shard) {
+		super(parallelism, shard);
+		this.base = base;
+	}
+
+	/**
+	 * Enumerates only the pairs i < j, so each two-bit flip is hashed exactly
+	 * once. Digests with a batch form hash {@link BatchHasher#LANES} records
+	 * per call. Flips in the same row run consecutively, which lets either
+	 * hasher resume from the chaining state of the unchanged prefix. The
+	 * first record alone locates the first flip.
+	 */
+	@Override
+	protected void hash(Digest digest, BatchDigest batch, long from, long to, byte[] output) {
+		// We can multiply the input bytes to increase our message space for the
+		// test.
+		final int inputBits = getInputBits(digest);
+		final int digestSize = digest.getDigestSize();
+		byte[] message = new byte[inputBits / Byte.SIZE];
+		int[] pair = new int[2];
+
+		for (int i = 0; i < message.length; i++) {
+			message[i] = base;
+		}
+
+		unrank(from, inputBits, pair);
+
+		if (batch != null) {
+			new BatchHasher(batch, message).hash(pair, (int) (to - from), output, 0);
+			return;
+		}
+
+		MidstateHasher hasher = new MidstateHasher(digest, message);
+
+		for (int offset = 0; offset < (to - from) * digestSize; offset += digestSize) {
+			hasher.hash(pair[0], pair[1], output, offset);
+			advance(pair, inputBits);
+		}
+	}
+
+	/**
+	 * Counts the base message, the one-bit flips and the two-bit flips.
+	 */
+	@Override
+	public long getTotalHashCount(Digest digest) {
+		final int inputBits = getInputBits(digest);
+		return 1 + inputBits + ArithmeticUtils.binomialCoefficient(inputBits, 2);
+	}
+
+	@Override
+	protected int getMessageLength(Digest digest) {
+		return getInputBits(digest) / Byte.SIZE;
+	}
+
+	/**
+	 * Hashes the base message and every one-bit flip, the first records of the
+	 * whole output, whatever the shard.
+	 * 
+	 * @param digest
+	 *            - the hash function to generate the bytes from.
+	 * @return the hashes, the base first.
+	 */
+	public byte[] hashSingles(Digest digest) {
+		final int inputBits = getInputBits(digest);
+		byte[] output = new byte[(1 + inputBits) * digest.getDigestSize()];
+		hash(digest, null, 0, 1 + inputBits, output);
+		return output;
+	}
+
+	/**
+	 * Computes the size of the messages hashed for a digest, which is four
+	 * times the size of its hash.
+	 * 
+	 * @param digest
+	 *            - the hash function the bytes would be generated from.
+	 * @return the number of bits in each message.
+	 */
+	public static int getInputBits(Digest digest) {
+		return digest.getDigestSize() * 4 * Byte.SIZE;
+	}
+
+	/**
+	 * Computes the position of the two-bit flip (i, j) among all two-bit
+	 * flips.
+	 * 
+	 * @param i
+	 *            - the lower flipped bit.
+	 * @param j
+	 *            - the higher flipped bit.
+	 * @param inputBits
+	 *            - the number of bits in the message.
+	 * @return the zero-based rank of the pair.
+	 */
+	public static long pairRank(int i, int j, int inputBits) {
+		return rowStart(i, inputBits) + (j - i - 1);
+	}
+
+	/**
+	 * Computes the rank of the first pair (i, i + 1) in row i.
+	 */
+	private static long rowStart(int i, int inputBits) {
+		return (long) i * (2L * inputBits - i - 1) / 2;
+	}
+
+	/**
+	 * Finds the bits flipped for an output record. Record 0 is the base
+	 * message, records 1 to inputBits are the one-bit flips and the rest are
+	 * the two-bit flips. Unused positions are set to -1.
+	 * 
+	 * @param record
+	 *            - the index of the record in the output.
+	 * @param inputBits
+	 *            - the number of bits in the message.
+	 * @param pair
+	 *            - receives the flipped bits, lower first.
+	 */
+	public static void unrank(long record, int inputBits, int[] pair) {
+		if (record == 0) {
+			pair[0] = -1;
+			pair[1] = -1;
+		} else if (record <= inputBits) {
+			pair[0] = (int) record - 1;
+			pair[1] = -1;
+		} else {
+			long rank = record - inputBits - 1;
+			int i = 0;
+			while (rowStart(i + 1, inputBits) <= rank) {
+				i++;
+			}
+			pair[0] = i;
+			pair[1] = (int) (i + 1 + rank - rowStart(i, inputBits));
+		}
+	}
+
+	/**
+	 * Moves the flipped bits on to those of the next output record.
+	 * 
+	 * @param pair
+	 *            - the flipped bits of a record, updated in place.
+	 * @param inputBits
+	 *            - the number of bits in the message.
+	 */
+	public static void advance(int[] pair, int inputBits) {
+		if (pair[1] >= 0) {
+			if (++pair[1] == inputBits) {
+				pair[0]++;
+				pair[1] = pair[0] + 1;
+			}
+		} else if (++pair[0] == inputBits) {
+			pair[0] = 0;
+			pair[1] = 1;
+		}
+	}
+}
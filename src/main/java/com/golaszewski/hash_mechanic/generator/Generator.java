@@ -1,18 +1,213 @@
 package com.golaszewski.hash_mechanic.generator;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.function.Supplier;
+
 import org.bouncycastle.crypto.Digest;
 
+import com.golaszewski.hash_mechanic.metrics.GenerationMetrics;
+import com.golaszewski.hash_mechanic.output.ChannelSink;
+import com.golaszewski.hash_mechanic.output.HashSink;
+import com.golaszewski.hash_mechanic.output.OffHeapArena;
+
 public abstract class Generator {
+	/**
+	 * The number of hashes between progress reports to the metrics.
+	 */
+	public static final int REPORT_INTERVAL = 1 << 14;
+
+	/**
+	 * The largest array the JVM reliably allocates.
+	 */
+	public static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private final GenerationMetrics metrics = new GenerationMetrics();
+
 	/**
 	 * Generates an array of bytes for the purpose of testing a hash function.
+	 * The whole dataset is held in memory, so prefer
+	 * {@link #generate(Digest, HashSink)} for large outputs.
 	 * 
 	 * @param digest
 	 *            - the hash function to generate the bytes from.
 	 * @return an array of bytes.
+	 * @throws IllegalArgumentException
+	 *             if the output is too large for an array.
 	 */
-	public abstract byte[] generateBytes(Digest digest);
-	
+	public byte[] generateBytes(Digest digest) {
+		long length = getOutputLength(digest);
+		if (length > MAX_ARRAY_LENGTH) {
+			throw new IllegalArgumentException("Cannot hold " + length + " bytes in an array, use generateArena()!");
+		}
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream((int) length);
+
+		try (HashSink sink = new ChannelSink(Channels.newChannel(output))) {
+			generate(digest, sink);
+		} catch (IOException e) {
+			throw new RuntimeException("Error in generating bytes!", e);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Generates the bytes for the purpose of testing a hash function into off
+	 * heap memory, for datasets too large for an array.
+	 * 
+	 * @param digest
+	 *            - the hash function to generate the bytes from.
+	 * @return an arena holding the bytes. Close it to release the memory.
+	 */
+	public OffHeapArena generateArena(Digest digest) {
+		OffHeapArena arena = new OffHeapArena();
+
+		try {
+			generate(digest, arena);
+		} catch (IOException e) {
+			arena.close();
+			throw new RuntimeException("Error in generating bytes!", e);
+		}
+
+		return arena;
+	}
+
+	/**
+	 * Generates the bytes for the purpose of testing a hash function, handing
+	 * each hash to the sink as soon as it is computed.
+	 * 
+	 * @param digest
+	 *            - the hash function to generate the bytes from.
+	 * @param sink
+	 *            - receives the generated bytes in order. The sink is not
+	 *            closed.
+	 */
+	public abstract void generate(Digest digest, HashSink sink) throws IOException;
+
+	/**
+	 * Generates the bytes for the purpose of testing a hash function, using
+	 * digests from a supplier. Generators that hash on several threads take
+	 * one digest per thread; the rest hash with a single digest.
+	 * 
+	 * @param digests
+	 *            - supplies fresh, identically configured instances of the
+	 *            hash function.
+	 * @param sink
+	 *            - receives the generated bytes in order. The sink is not
+	 *            closed.
+	 */
+	public void generate(Supplier<? extends Digest> digests, HashSink sink) throws IOException {
+		generate(digests, sink, Checkpoint.NONE);
+	}
+
+	/**
+	 * Generates the bytes for the purpose of testing a hash function, starting
+	 * from a checkpoint and updating it as the run goes. The sink must already
+	 * hold the bytes before the checkpoint. Generators that cannot resume
+	 * ignore the checkpoint, so check {@link #isResumable()} first.
+	 * 
+	 * @param digests
+	 *            - supplies fresh, identically configured instances of the
+	 *            hash function.
+	 * @param sink
+	 *            - receives the generated bytes after the checkpoint, in
+	 *            order. The sink is not closed.
+	 * @param checkpoint
+	 *            - where to start, and where to record progress.
+	 */
+	public void generate(Supplier<? extends Digest> digests, HashSink sink, Checkpoint checkpoint)
+			throws IOException {
+		generate(digests.get(), sink, checkpoint);
+	}
+
+	/**
+	 * Generates the bytes for the purpose of testing a hash function with a
+	 * single digest, starting from a checkpoint and updating it as the run
+	 * goes.
+	 * 
+	 * @param digest
+	 *            - the hash function to generate the bytes from.
+	 * @param sink
+	 *            - receives the generated bytes after the checkpoint, in
+	 *            order. The sink is not closed.
+	 * @param checkpoint
+	 *            - where to start, and where to record progress.
+	 */
+	public void generate(Digest digest, HashSink sink, Checkpoint checkpoint) throws IOException {
+		generate(digest, sink);
+	}
+
+	/**
+	 * @return true if the generator can resume from a {@link Checkpoint}.
+	 */
+	public boolean isResumable() {
+		return false;
+	}
+
+	/**
+	 * Computes the number of bytes this generator produces for a digest,
+	 * without generating them.
+	 * 
+	 * @param digest
+	 *            - the hash function the bytes would be generated from.
+	 * @return the exact output length in bytes.
+	 */
+	public abstract long getOutputLength(Digest digest);
+
+	/**
+	 * Computes the number of hashes this generator computes for a digest.
+	 * 
+	 * @param digest
+	 *            - the hash function the bytes would be generated from.
+	 * @return the number of hashes.
+	 */
+	public long getHashCount(Digest digest) {
+		return getOutputLength(digest) / digest.getDigestSize();
+	}
+
+	/**
+	 * Computes the number of hashes in the whole output of this generator for
+	 * a digest, of which a sharded generator computes only its part.
+	 * 
+	 * @param digest
+	 *            - the hash function the bytes would be generated from.
+	 * @return the number of hashes.
+	 */
+	public long getTotalHashCount(Digest digest) {
+		return getHashCount(digest);
+	}
+
+	/**
+	 * @return the part of the output this generator produces. Only the
+	 *         density and random generators can be sharded.
+	 */
+	public Shard getShard() {
+		return Shard.WHOLE;
+	}
+
+	/**
+	 * Estimates the memory held in buffers while generating, not counting the
+	 * sink. Generators that keep only the current hash use the default.
+	 * 
+	 * @param digest
+	 *            - the hash function the bytes would be generated from.
+	 * @return the buffer size in bytes.
+	 */
+	public long getBufferLength(Digest digest) {
+		return digest.getDigestSize();
+	}
+
 	public abstract String getName();
+
+	/**
+	 * @return the metrics of the current or most recent run. Each run clears
+	 *         them when it starts.
+	 */
+	public GenerationMetrics getMetrics() {
+		return metrics;
+	}
 	
 	/**
 	 * Toggles a bit in a byte array.
@@ -30,8 +225,21 @@ public abstract class Generator {
 			result[i] = bytes[i];
 		}
 
-		int byteIndex = position / Byte.SIZE;
-		result[byteIndex] ^= 1 << (Byte.SIZE - (position % Byte.SIZE) - 1);
+		flipBit(result, position);
 		return result;
 	}
+
+	/**
+	 * Flips a bit of a byte array in place. Bits are numbered from the most
+	 * significant bit of the first byte.
+	 * 
+	 * @param bytes
+	 *            - the array of bytes to modify.
+	 * @param position
+	 *            - the index of the bit to flip.
+	 */
+	public static void flipBit(byte[] bytes, int position) {
+		int byteIndex = position / Byte.SIZE;
+		bytes[byteIndex] ^= 1 << (Byte.SIZE - (position % Byte.SIZE) - 1);
+	}
 }
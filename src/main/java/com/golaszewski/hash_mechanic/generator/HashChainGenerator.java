@@ -1,38 +1,75 @@
 package com.golaszewski.hash_mechanic.generator;
 
+import java.io.IOException;
+
 import org.bouncycastle.crypto.Digest;
 
+import com.golaszewski.hash_mechanic.metrics.GenerationMetrics;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
 public class HashChainGenerator extends Generator {
 
 	@Override
-	public byte[] generateBytes(Digest digest) {
+	public void generate(Digest digest, HashSink sink) throws IOException {
+		generate(digest, sink, Checkpoint.NONE);
+	}
+
+	/**
+	 * The chain is sequential, so the checkpoint saves the last hash along
+	 * with the number of hashes written, and the chain continues from it.
+	 */
+	@Override
+	public void generate(Digest digest, HashSink sink, Checkpoint checkpoint) throws IOException {
 		// We can multiply the input bytes to increase our message space for the
 		// test.
 		final int inputBytes = digest.getDigestSize();
-		final int inputBits = inputBytes * Byte.SIZE;
-		final int outputLength = inputBits * inputBits * inputBits;
-		int outputOffset = 0;
+		final long outputLength = getOutputLength(digest);
+		final long first = checkpoint.getRecord();
 		
-		byte[] output = new byte[outputLength];
 		byte[] hash = new byte[digest.getDigestSize()];
 				
-		System.out.println("Generating " + output.length + " bytes.");
+		System.out.println("Generating " + outputLength + " bytes.");
+		getMetrics().start(getName(), digest.getAlgorithmName(), outputLength - first * inputBytes);
+		GenerationMetrics.Recorder recorder = getMetrics().recorder(digest);
+		int pending = 0;
 
-		// Create all zero initialization vector.
-		for (int i = 0; i < hash.length; i++) {
-			hash[i] = (byte) 0x00;
+		// Create all zero initialization vector, or continue the chain from
+		// the checkpoint.
+		if (first > 0) {
+			System.arraycopy(checkpoint.getState(), 0, hash, 0, hash.length);
+		} else {
+			for (int i = 0; i < hash.length; i++) {
+				hash[i] = (byte) 0x00;
+			}
 		}
 		
 		// Chain as many hashes as needed and concatenate their bits.
-		for (int i = 0; i < outputLength; i = i + inputBytes) {
+		for (long i = first * inputBytes; i < outputLength; i = i + inputBytes) {
 			digest.update(hash, 0, hash.length);
 			digest.doFinal(hash, 0);
 			digest.reset();
-			System.arraycopy(hash, 0, output, outputOffset, hash.length);
-			outputOffset += digest.getDigestSize();
+			sink.write(hash, 0, hash.length);
+
+			if (++pending == REPORT_INTERVAL) {
+				recorder.record(pending);
+				pending = 0;
+				checkpoint.update(sink, (i + inputBytes) / inputBytes, hash);
+			}
 		}
-		
-		return output;
+
+		recorder.record(pending);
+		getMetrics().finish();
+	}
+
+	@Override
+	public long getOutputLength(Digest digest) {
+		final long inputBits = digest.getDigestSize() * Byte.SIZE;
+		return Math.multiplyExact(Math.multiplyExact(inputBits, inputBits), inputBits);
+	}
+
+	@Override
+	public boolean isResumable() {
+		return true;
 	}
 
 	@Override
@@ -1,83 +1,41 @@
 package com.golaszewski.hash_mechanic.generator;
 
-import org.apache.commons.math3.util.ArithmeticUtils;
-import org.bouncycastle.crypto.Digest;
-
 /**
- * This data generator TODO
+ * This data generator hashes an all one message along with every message that is
+ * one or two bit flips away from it.
  * 
  * @author Ennis Golaszewski
  */
-public class HighDensityGenerator extends Generator {
-
-	@Override
-	public byte[] generateBytes(Digest digest) {
-		// We can multiply the input bytes to increase our message space for the
-		// test.
-		final int inputBytes = digest.getDigestSize() * 4;
-		final int inputBits = inputBytes * Byte.SIZE;
-
-		int outputOffset = 0;
-
-		byte[] output = new byte[digest.getDigestSize() + (inputBits * digest.getDigestSize())
-				+ (int) (ArithmeticUtils.binomialCoefficient(inputBits, 2) * digest.getDigestSize())];
-		byte[] hash = new byte[digest.getDigestSize()];
-		byte[] bits = new byte[inputBytes];
-		byte[] oneOff = new byte[inputBytes];
-		byte[] twoOff = new byte[inputBytes];
-
-		for (int i = 0; i < bits.length; i++) {
-			bits[i] = (byte) 0xFF;
-		}
-
-		System.out.println("Generating " + output.length + " bytes.");
+public class HighDensityGenerator extends DensityGenerator {
 
-		digest.update(bits, 0, bits.length);
-		digest.doFinal(hash, 0);
-		digest.reset();
-		System.arraycopy(hash, 0, output, outputOffset, hash.length);
-		outputOffset += digest.getDigestSize();
-
-		for (int i = 0; i < inputBits; i++) {
-			oneOff = toggleBit(bits, i);
-			digest.update(oneOff, 0, oneOff.length);
-			digest.doFinal(hash, 0);
-			digest.reset();
-			System.arraycopy(hash, 0, output, outputOffset, hash.length);
-			outputOffset += digest.getDigestSize();
-		}
-
-		boolean[][] hashed = new boolean[inputBits][inputBits];
-
-		for (int i = 0; i < inputBits; i++) {
-			for (int j = 0; j < inputBits; j++) {
-				hashed[i][j] = false;
-			}
-		}
-
-		for (int i = 0; i < inputBits; i++) {
-			oneOff = toggleBit(bits, i);
-			for (int j = 0; j < inputBits; j++) {
-				if (i != j) {
-					twoOff = oneOff;
-					twoOff = toggleBit(twoOff, j);
-					digest.update(twoOff, 0, twoOff.length);
-					digest.doFinal(hash, 0);
-					digest.reset();
+	/**
+	 * Creates a generator that hashes on the calling thread.
+	 */
+	public HighDensityGenerator() {
+		this(1);
+	}
 
-					// Write a hash only if we haven't already written it to the
-					// output.
-					if (!hashed[i][j]) {
-						hashed[i][j] = true;
-						hashed[j][i] = true;
-						System.arraycopy(hash, 0, output, outputOffset, hash.length);
-						outputOffset += digest.getDigestSize();
-					}
-				}
-			}
-		}
+	/**
+	 * Creates a generator that hashes on a pool of worker threads.
+	 * 
+	 * @param parallelism
+	 *            - the number of worker threads.
+	 */
+	public HighDensityGenerator(int parallelism) {
+		this(parallelism, Shard.WHOLE);
+	}
 
-		return output;
+	/**
+	 * Creates a generator that hashes one shard of the output on a pool of
+	 * worker threads.
+	 * 
+	 * @param parallelism
+	 *            - the number of worker threads.
+	 * @param shard
+	 *            - the part of the output to generate.
+	 */
+	public HighDensityGenerator(int parallelism, Shard shard) {
+		super((byte) 0xFF, parallelism, shard);
 	}
 
 	@Override
@@ -0,0 +1,143 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+
+/**
+ * Hashes every message exactly k bit flips away from a constant base message.
+ * The messages are visited in {@link RevolvingDoor} order, so each one is made
+ * from the one before it by flipping two bits of a single buffer in place.
+ * Messages are as long as in the {@link DensityGenerator}, four times the size
+ * of the hash. Each slice starts from the unranked subset of its first record.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class KBitDensityGenerator extends SlicedGenerator {
+	private final byte base;
+	private final int weight;
+
+	/**
+	 * Creates a generator that hashes on the calling thread.
+	 * 
+	 * @param base
+	 *            - the value of every byte of the base message, 0x00 or
+	 *            0xFF.
+	 * @param weight
+	 *            - the number of bits flipped in every message.
+	 */
+	public KBitDensityGenerator(byte base, int weight) {
+		this(base, weight, 1, Shard.WHOLE);
+	}
+
+	/**
+	 * Creates a generator that hashes one shard of the output on a pool of
+	 * worker threads.
+	 * 
+	 * @param base
+	 *            - the value of every byte of the base message, 0x00 or
+	 *            0xFF.
+	 * @param weight
+	 *            - the number of bits flipped in every message.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 hashes on the
+	 *            calling thread.
+	 * @param shard
+	 *            - the part of the output to generate.
+	 */
+	public KBitDensityGenerator(byte base, int weight, int parallelism, Shard shard) {
+		super(parallelism, shard);
+
+		if (weight < 1) {
+			throw new IllegalArgumentException("At least one bit must be flipped!");
+		}
+
+		this.base = base;
+		this.weight = weight;
+	}
+
+	/**
+	 * Seeks a cursor to the first record, then moves through the range two
+	 * bit flips at a time.
+	 */
+	@Override
+	protected void hash(Digest digest, BatchDigest batch, long from, long to, byte[] output) {
+		final int digestSize = digest.getDigestSize();
+		final byte[] message = new byte[digestSize * 4];
+		final int[] bits = new int[weight];
+		final RevolvingDoor cursor = createDoor(digest);
+
+		for (int i = 0; i < message.length; i++) {
+			message[i] = base;
+		}
+
+		cursor.seek(from);
+		cursor.getBits(bits);
+		for (int bit : bits) {
+			flipBit(message, bit);
+		}
+
+		if (batch != null) {
+			byte[] messages = new byte[BatchHasher.LANES * message.length];
+			int outOff = 0;
+
+			for (long next = from; next < to; next += BatchHasher.LANES) {
+				int count = (int) Math.min(BatchHasher.LANES, to - next);
+
+				for (int l = 0; l < count; l++) {
+					System.arraycopy(message, 0, messages, l * message.length, message.length);
+					if (next + l + 1 < to) {
+						advance(cursor, message);
+					}
+				}
+
+				batch.digest(messages, 0, message.length, count, output, outOff);
+				outOff += count * digestSize;
+			}
+			return;
+		}
+
+		for (long next = from; next < to; next++) {
+			digest.update(message, 0, message.length);
+			digest.doFinal(output, (int) (next - from) * digestSize);
+			if (next + 1 < to) {
+				advance(cursor, message);
+			}
+		}
+	}
+
+	/**
+	 * Moves to the next subset by flipping the two bits that changed.
+	 */
+	private static void advance(RevolvingDoor cursor, byte[] message) {
+		cursor.next();
+		flipBit(message, cursor.getOut());
+		flipBit(message, cursor.getIn());
+	}
+
+	private RevolvingDoor createDoor(Digest digest) {
+		return new RevolvingDoor(DensityGenerator.getInputBits(digest), weight);
+	}
+
+	/**
+	 * Counts the messages of the weight, input bits choose k.
+	 */
+	@Override
+	public long getTotalHashCount(Digest digest) {
+		return createDoor(digest).getCount();
+	}
+
+	@Override
+	protected int getMessageLength(Digest digest) {
+		return digest.getDigestSize() * 4;
+	}
+
+	/**
+	 * @return lowdensity or highdensity followed by the weight, such as
+	 *         lowdensity3.
+	 */
+	@Override
+	public String getName() {
+		return ((base == 0) ? "lowdensity" : "highdensity") + weight;
+	}
+}
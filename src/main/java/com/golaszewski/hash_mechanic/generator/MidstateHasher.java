@@ -0,0 +1,144 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.util.Memoable;
+
+/**
+ * Hashes messages that differ from a constant base message in at most two bits.
+ * Message blocks before the first flipped bit are identical to the base
+ * message, so hashing resumes from a cached chaining state instead of from the
+ * IV. For a pair (i, j) with j in a later block than i, the blocks between the
+ * two flips are shared by the whole row i and are absorbed once per row.
+ * 
+ * Digests that are not {@link Memoable} {@link ExtendedDigest}s, or messages
+ * that fit in one block, are hashed from scratch.
+ * 
+ * @author Ennis Golaszewski
+ */
+class MidstateHasher {
+	private final Digest digest;
+	private final byte[] message;
+	private final boolean caching;
+	private final int blockSize;
+
+	// State after absorbing the first k blocks of the base message. Entry 0 is
+	// the IV, which is reached through reset().
+	private final Memoable[] baseStates;
+
+	// State after absorbing the first k blocks of the base message with bit
+	// row flipped. Entries up to rowBlocks are valid.
+	private final Memoable[] rowStates;
+	private int row = -1;
+	private int rowBlocks;
+
+	/**
+	 * @param digest
+	 *            - the hash function. It is used exclusively by this hasher.
+	 * @param base
+	 *            - the base message. This input is not modified.
+	 */
+	MidstateHasher(Digest digest, byte[] base) {
+		this.digest = digest;
+		this.message = base.clone();
+
+		if (digest instanceof Memoable && digest instanceof ExtendedDigest
+				&& message.length > ((ExtendedDigest) digest).getByteLength()) {
+			caching = true;
+			blockSize = ((ExtendedDigest) digest).getByteLength();
+			baseStates = new Memoable[(message.length - 1) / blockSize + 1];
+			rowStates = new Memoable[baseStates.length];
+
+			digest.reset();
+			for (int k = 1; k < baseStates.length; k++) {
+				digest.update(message, (k - 1) * blockSize, blockSize);
+				baseStates[k] = ((Memoable) digest).copy();
+				rowStates[k] = ((Memoable) digest).copy();
+			}
+		} else {
+			caching = false;
+			blockSize = message.length;
+			baseStates = null;
+			rowStates = null;
+		}
+	}
+
+	/**
+	 * Hashes the base message with up to two bits flipped.
+	 * 
+	 * @param i
+	 *            - the lower flipped bit, or -1 for none.
+	 * @param j
+	 *            - the higher flipped bit, or -1 for none.
+	 * @param out
+	 *            - the array to write the hash to.
+	 * @param outOff
+	 *            - the offset into the output array.
+	 */
+	void hash(int i, int j, byte[] out, int outOff) {
+		if (i >= 0) {
+			Generator.flipBit(message, i);
+		}
+		if (j >= 0) {
+			Generator.flipBit(message, j);
+		}
+
+		int start = 0;
+		if (caching && i >= 0) {
+			int firstBlock = blockOf(i);
+
+			if (j >= 0 && blockOf(j) > firstBlock) {
+				start = blockOf(j);
+				restore(rowState(i, start));
+			} else {
+				start = firstBlock;
+				restore(baseStates[start]);
+			}
+		} else {
+			digest.reset();
+		}
+
+		digest.update(message, start * blockSize, message.length - start * blockSize);
+		digest.doFinal(out, outOff);
+
+		if (j >= 0) {
+			Generator.flipBit(message, j);
+		}
+		if (i >= 0) {
+			Generator.flipBit(message, i);
+		}
+	}
+
+	private int blockOf(int bit) {
+		return bit / Byte.SIZE / blockSize;
+	}
+
+	private void restore(Memoable state) {
+		if (state == null) {
+			digest.reset();
+		} else {
+			((Memoable) digest).reset(state);
+		}
+	}
+
+	/**
+	 * Finds the state after the first k blocks of the message with bit i
+	 * flipped, absorbing any blocks of the row not seen yet. Bit i must be
+	 * flipped in the working message, and no other bit before block k.
+	 */
+	private Memoable rowState(int i, int k) {
+		if (row != i) {
+			row = i;
+			rowBlocks = blockOf(i);
+		}
+
+		while (rowBlocks < k) {
+			restore(rowBlocks == blockOf(i) ? baseStates[rowBlocks] : rowStates[rowBlocks]);
+			digest.update(message, rowBlocks * blockSize, blockSize);
+			rowBlocks++;
+			rowStates[rowBlocks].reset((Memoable) digest);
+		}
+
+		return rowStates[k];
+	}
+}
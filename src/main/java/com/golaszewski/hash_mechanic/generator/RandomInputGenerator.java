@@ -0,0 +1,166 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+
+/**
+ * Hashes pseudo-random messages of a fixed length, the reference dataset the
+ * structured generators are compared against. The messages are cut from one
+ * SplitMix64 stream, the generator behind {@link java.util.SplittableRandom},
+ * computed in counter mode: word p of the stream is the mix of the seed plus
+ * p + 1 times the golden gamma. Any message can therefore be made without the
+ * ones before it, so any slice of the output can be computed on its own, and
+ * the same seed gives the same dataset on any JVM.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class RandomInputGenerator extends SlicedGenerator {
+	/**
+	 * The number of messages hashed unless another is given.
+	 */
+	public static final long DEFAULT_MESSAGES = 1L << 24;
+
+	/**
+	 * The message length in bytes unless another is given, one MD5 or BLAKE-256
+	 * block.
+	 */
+	public static final int DEFAULT_MESSAGE_LENGTH = 64;
+
+	/**
+	 * The increment of the SplitMix64 counter, as in SplittableRandom.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+	private final int messageLength;
+	private final long messages;
+
+	/**
+	 * Creates a generator of the default size that hashes on the calling
+	 * thread.
+	 * 
+	 * @param seed
+	 *            - selects the stream of messages.
+	 */
+	public RandomInputGenerator(long seed) {
+		this(seed, DEFAULT_MESSAGE_LENGTH, DEFAULT_MESSAGES, 1, Shard.WHOLE);
+	}
+
+	/**
+	 * Creates a generator that hashes one shard of the output on a pool of
+	 * worker threads.
+	 * 
+	 * @param seed
+	 *            - selects the stream of messages.
+	 * @param messageLength
+	 *            - the length of every message in bytes.
+	 * @param messages
+	 *            - the number of messages in the whole output.
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 hashes on the
+	 *            calling thread.
+	 * @param shard
+	 *            - the part of the output to generate.
+	 */
+	public RandomInputGenerator(long seed, int messageLength, long messages, int parallelism, Shard shard) {
+		super(parallelism, shard);
+
+		if (messageLength < 1 || messages < 1) {
+			throw new IllegalArgumentException("Cannot hash " + messages + " messages of " + messageLength
+					+ " bytes!");
+		}
+
+		this.seed = seed;
+		this.messageLength = messageLength;
+		this.messages = messages;
+	}
+
+	/**
+	 * Fills every message of a batch, or one message at a time, straight from
+	 * its index.
+	 */
+	@Override
+	protected void hash(Digest digest, BatchDigest batch, long from, long to, byte[] output) {
+		final int digestSize = digest.getDigestSize();
+
+		if (batch != null) {
+			byte[] batchMessages = new byte[BatchHasher.LANES * messageLength];
+
+			for (long next = from; next < to; next += BatchHasher.LANES) {
+				int count = (int) Math.min(BatchHasher.LANES, to - next);
+
+				for (int l = 0; l < count; l++) {
+					fillMessage(next + l, batchMessages, l * messageLength);
+				}
+
+				batch.digest(batchMessages, 0, messageLength, count, output, (int) (next - from) * digestSize);
+			}
+			return;
+		}
+
+		byte[] message = new byte[messageLength];
+		for (long next = from; next < to; next++) {
+			fillMessage(next, message, 0);
+			digest.update(message, 0, message.length);
+			digest.doFinal(output, (int) (next - from) * digestSize);
+		}
+	}
+
+	/**
+	 * Writes a message into a buffer. Message i takes its own run of words
+	 * from the stream, starting at word i times the words per message, each
+	 * word most significant byte first. The unused bytes of a last partial
+	 * word are dropped.
+	 * 
+	 * @param index
+	 *            - the index of the message in the whole output.
+	 * @param bytes
+	 *            - receives the message.
+	 * @param offset
+	 *            - the position of the message in the buffer.
+	 */
+	void fillMessage(long index, byte[] bytes, int offset) {
+		final int words = (messageLength + Long.BYTES - 1) / Long.BYTES;
+		long counter = seed + index * words * GOLDEN_GAMMA;
+
+		for (int i = 0; i < messageLength; i += Long.BYTES) {
+			counter += GOLDEN_GAMMA;
+			long word = mix64(counter);
+
+			for (int b = 0; b < Long.BYTES && i + b < messageLength; b++) {
+				bytes[offset + i + b] = (byte) (word >>> (Long.SIZE - Byte.SIZE * (b + 1)));
+			}
+		}
+	}
+
+	/**
+	 * The output function of SplitMix64, a variant of the MurmurHash3
+	 * finalizer.
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public long getTotalHashCount(Digest digest) {
+		return messages;
+	}
+
+	@Override
+	protected int getMessageLength(Digest digest) {
+		return messageLength;
+	}
+
+	/**
+	 * @return random followed by the message length and the seed, such as
+	 *         random-64-0, so datasets of different streams do not share a
+	 *         file name.
+	 */
+	@Override
+	public String getName() {
+		return "random-" + messageLength + "-" + seed;
+	}
+}
@@ -0,0 +1,197 @@
+package com.golaszewski.hash_mechanic.generator;
+
+/**
+ * Walks the k-element subsets of n bits in revolving door order, in which each
+ * subset differs from the one before it by one bit leaving and one bit
+ * entering. Subsets are ranked and unranked in that order, so any range of
+ * them can be visited without visiting the ones before it. The ranking follows
+ * Kreher and Stinson, Combinatorial Algorithms, section 2.3.3.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class RevolvingDoor {
+	private final int n;
+	private final int k;
+
+	/**
+	 * binomials[i][x] holds x choose i, for i up to k and x up to n + 1.
+	 */
+	private final long[][] binomials;
+
+	/**
+	 * The current subset, one-based and ascending in t[1] to t[k]. t[k + 1]
+	 * holds n + 1 as a sentinel.
+	 */
+	private final int[] t;
+	private int out = -1;
+	private int in = -1;
+
+	/**
+	 * Creates a cursor on the first subset.
+	 * 
+	 * @param n
+	 *            - the number of bits.
+	 * @param k
+	 *            - the number of bits in each subset.
+	 * @throws IllegalArgumentException
+	 *             if k is not between 1 and n, or there are more than
+	 *             {@link Long#MAX_VALUE} subsets.
+	 */
+	public RevolvingDoor(int n, int k) {
+		if (k < 1 || k > n) {
+			throw new IllegalArgumentException("Cannot choose " + k + " of " + n + " bits!");
+		}
+
+		this.n = n;
+		this.k = k;
+		this.binomials = new long[k + 1][n + 2];
+		this.t = new int[k + 2];
+
+		for (int x = 0; x <= n + 1; x++) {
+			binomials[0][x] = 1;
+			for (int i = 1; i <= Math.min(k, x); i++) {
+				try {
+					binomials[i][x] = Math.addExact(binomials[i - 1][x - 1], binomials[i][x - 1]);
+				} catch (ArithmeticException e) {
+					if (x <= n) {
+						throw new IllegalArgumentException("Too many subsets of " + k + " of " + n + " bits!");
+					}
+					// Only needed for subsets beyond the last.
+					binomials[i][x] = Long.MAX_VALUE;
+				}
+			}
+		}
+
+		seek(0);
+	}
+
+	/**
+	 * Creates a cursor on the same subsets, sharing the binomial table.
+	 * 
+	 * @param other
+	 *            - the cursor to copy, including its position.
+	 */
+	public RevolvingDoor(RevolvingDoor other) {
+		this.n = other.n;
+		this.k = other.k;
+		this.binomials = other.binomials;
+		this.t = other.t.clone();
+	}
+
+	/**
+	 * @return the number of subsets, n choose k.
+	 */
+	public long getCount() {
+		return binomials[k][n];
+	}
+
+	/**
+	 * Moves to the subset of a rank.
+	 * 
+	 * @param rank
+	 *            - the zero-based rank, below {@link #getCount()}.
+	 */
+	public void seek(long rank) {
+		int x = n;
+
+		for (int i = k; i >= 1; i--) {
+			while (binomials[i][x] > rank) {
+				x--;
+			}
+			t[i] = x + 1;
+			rank = binomials[i][x + 1] - rank - 1;
+		}
+
+		t[k + 1] = n + 1;
+		out = -1;
+		in = -1;
+	}
+
+	/**
+	 * @return the zero-based rank of the current subset.
+	 */
+	public long getRank() {
+		long rank = -(k % 2);
+		long sign = 1;
+
+		for (int i = k; i >= 1; i--) {
+			rank += sign * binomials[i][t[i]];
+			sign = -sign;
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Moves to the next subset. The bits that changed are then given by
+	 * {@link #getOut()} and {@link #getIn()}. Must not be called on the last
+	 * subset.
+	 */
+	public void next() {
+		int j = 1;
+		while (j <= k && t[j] == j) {
+			j++;
+		}
+
+		if ((k - j) % 2 != 0) {
+			// Here t[i] == i for every i < j.
+			if (j == 1) {
+				out = t[1];
+				in = --t[1];
+			} else if (j == 2) {
+				out = 1;
+				in = t[1] = 2;
+			} else {
+				out = j - 2;
+				t[j - 2] = j - 1;
+				in = t[j - 1] = j;
+			}
+		} else if (t[j + 1] != t[j] + 1) {
+			out = (j > 1) ? j - 1 : t[j];
+			if (j > 1) {
+				t[j - 1] = t[j];
+			}
+			in = ++t[j];
+		} else {
+			out = t[j + 1];
+			t[j + 1] = t[j];
+			in = t[j] = j;
+		}
+
+		// The last subset wraps around through the sentinel, so restore it.
+		t[k + 1] = n + 1;
+
+		// Zero-based bit positions.
+		out--;
+		in--;
+	}
+
+	/**
+	 * @return the bit that left the subset on the last {@link #next()},
+	 *         numbered from zero, or -1 if none has.
+	 */
+	public int getOut() {
+		return out;
+	}
+
+	/**
+	 * @return the bit that entered the subset on the last {@link #next()},
+	 *         numbered from zero, or -1 if none has.
+	 */
+	public int getIn() {
+		return in;
+	}
+
+	/**
+	 * Copies out the current subset.
+	 * 
+	 * @param bits
+	 *            - receives the k bits, numbered from zero, in ascending
+	 *            order.
+	 */
+	public void getBits(int[] bits) {
+		for (int i = 0; i < k; i++) {
+			bits[i] = t[i + 1] - 1;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.golaszewski.hash_mechanic.generator;
+
+/**
+ * Selects one of several contiguous parts of a generator's output, so the
+ * parts can be generated on separate machines and concatenated. Shard i of n
+ * covers the records from i * total / n up to (i + 1) * total / n, rounded so
+ * that the first total % n shards hold one extra record. The split depends
+ * only on the record count, so every machine agrees on it.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class Shard {
+	/**
+	 * The whole output.
+	 */
+	public static final Shard WHOLE = new Shard(0, 1);
+
+	private final int index;
+	private final int count;
+
+	/**
+	 * @param index
+	 *            - the zero-based index of the shard.
+	 * @param count
+	 *            - the number of shards the output is split into.
+	 * @throws IllegalArgumentException
+	 *             if the index is not below the count.
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException("No shard " + index + " of " + count + "!");
+		}
+
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * Parses a shard written as INDEX/COUNT, such as 0/8.
+	 * 
+	 * @param value
+	 *            - the shard.
+	 * @return the shard.
+	 * @throws IllegalArgumentException
+	 *             if the value is not a shard.
+	 */
+	public static Shard parse(String value) {
+		String[] parts = value.split("/");
+
+		try {
+			if (parts.length == 2) {
+				return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+			}
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		throw new IllegalArgumentException("A shard is INDEX/COUNT with 0 <= INDEX < COUNT, not " + value + "!");
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public boolean isWhole() {
+		return count == 1;
+	}
+
+	/**
+	 * @param total
+	 *            - the number of records in the whole output.
+	 * @return the index of the first record of the shard.
+	 */
+	public long getFirst(long total) {
+		return index * (total / count) + Math.min(index, total % count);
+	}
+
+	/**
+	 * @param total
+	 *            - the number of records in the whole output.
+	 * @return the number of records in the shard.
+	 */
+	public long getRecords(long total) {
+		return total / count + (index < total % count ? 1 : 0);
+	}
+
+	/**
+	 * Names the dataset of a generator restricted to this shard.
+	 * 
+	 * @param name
+	 *            - the name of the generator.
+	 * @return the name, followed by the shard unless it is the whole output.
+	 */
+	public String name(String name) {
+		return isWhole() ? name : name + "." + this;
+	}
+
+	@Override
+	public String toString() {
+		return "shard-" + index + "-of-" + count;
+	}
+}
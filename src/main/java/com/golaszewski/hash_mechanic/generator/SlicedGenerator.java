@@ -0,0 +1,217 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+import com.golaszewski.hash_mechanic.hashes.BatchableDigest;
+import com.golaszewski.hash_mechanic.metrics.GenerationMetrics;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+/**
+ * A generator whose records can each be computed from their index alone. The
+ * output is computed in slices of {@link #SLICE_RECORDS} records, which run
+ * on several threads, resume from a checkpoint and split into shards.
+ * Subclasses only hash a range of records.
+ * 
+ * @author Ennis Golaszewski
+ */
+public abstract class SlicedGenerator extends Generator {
+	/**
+	 * The number of hashes computed by one task in parallel mode.
+	 */
+	public static final int SLICE_RECORDS = 1 << 14;
+
+	private final int parallelism;
+	private final Shard shard;
+
+	/**
+	 * @param parallelism
+	 *            - the number of worker threads. A value of 1 hashes on the
+	 *            calling thread.
+	 * @param shard
+	 *            - the part of the output to generate.
+	 */
+	protected SlicedGenerator(int parallelism, Shard shard) {
+		this.parallelism = parallelism;
+		this.shard = shard;
+	}
+
+	@Override
+	public void generate(Digest digest, HashSink sink) throws IOException {
+		generate(digest, sink, Checkpoint.NONE);
+	}
+
+	/**
+	 * Hashes one slice at a time into a reused buffer, updating the checkpoint
+	 * after each. A shard counts its records from its own first record.
+	 */
+	@Override
+	public void generate(Digest digest, HashSink sink, Checkpoint checkpoint) throws IOException {
+		final long start = shard.getFirst(getTotalHashCount(digest));
+		final long records = start + shard.getRecords(getTotalHashCount(digest));
+		final BatchDigest batch = createBatch(digest);
+		final GenerationMetrics.Recorder recorder = (batch != null) ? getMetrics().recorder(batch) : getMetrics()
+				.recorder(digest);
+		byte[] output = new byte[SLICE_RECORDS * digest.getDigestSize()];
+
+		System.out.println("Generating " + getOutputLength(digest) + " bytes.");
+		getMetrics().start(getName(), digest.getAlgorithmName(), getOutputLength(digest) - checkpoint.getOffset());
+
+		for (long from = start + checkpoint.getRecord(); from < records; from += SLICE_RECORDS) {
+			long to = Math.min(records, from + SLICE_RECORDS);
+
+			hash(digest, batch, from, to, output);
+			sink.write(output, 0, (int) (to - from) * digest.getDigestSize());
+			recorder.record(to - from);
+			checkpoint.update(sink, to - start, null);
+		}
+
+		getMetrics().finish();
+	}
+
+	/**
+	 * Computes slices on a fork/join pool, one digest per worker. Slices are
+	 * handed to the sink in order, so the output is byte-for-byte identical to
+	 * the serial output, and only a bounded window of slices is held in memory.
+	 * The checkpoint is updated as each slice is written.
+	 */
+	@Override
+	public void generate(Supplier<? extends Digest> digests, HashSink sink, Checkpoint checkpoint)
+			throws IOException {
+		if (parallelism <= 1) {
+			generate(digests.get(), sink, checkpoint);
+			return;
+		}
+
+		final Digest digest = digests.get();
+		final long start = shard.getFirst(getTotalHashCount(digest));
+		final long records = start + shard.getRecords(getTotalHashCount(digest));
+		final ThreadLocal<Digest> workerDigests = ThreadLocal.withInitial(digests);
+
+		System.out.println("Generating " + getOutputLength(digest) + " bytes on " + parallelism + " threads.");
+		getMetrics().start(getName(), digest.getAlgorithmName(), getOutputLength(digest) - checkpoint.getOffset());
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		Deque<Slice> window = new ArrayDeque<Slice>();
+
+		try {
+			for (long from = start + checkpoint.getRecord(); from < records; from += SLICE_RECORDS) {
+				if (window.size() >= parallelism * 2) {
+					write(window.removeFirst(), sink, checkpoint, start);
+				}
+
+				Slice slice = new Slice(workerDigests, from, Math.min(records, from + SLICE_RECORDS));
+				pool.execute(slice);
+				window.addLast(slice);
+			}
+
+			while (!window.isEmpty()) {
+				write(window.removeFirst(), sink, checkpoint, start);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		getMetrics().finish();
+	}
+
+	private static void write(Slice slice, HashSink sink, Checkpoint checkpoint, long start) throws IOException {
+		byte[] output = slice.join();
+		sink.write(output, 0, output.length);
+		checkpoint.update(sink, slice.to - start, null);
+	}
+
+	/**
+	 * Hashes the records from one index up to another into the start of the
+	 * output. It may run on several threads at once, each with its own
+	 * digests.
+	 * 
+	 * @param digest
+	 *            - hashes one message at a time if there is no batch digest.
+	 * @param batch
+	 *            - hashes {@link BatchHasher#LANES} messages at a time, or
+	 *            null.
+	 * @param from
+	 *            - the index of the first record in the whole output.
+	 * @param to
+	 *            - the index after the last record.
+	 * @param output
+	 *            - receives the hashes.
+	 */
+	protected abstract void hash(Digest digest, BatchDigest batch, long from, long to, byte[] output);
+
+	/**
+	 * @return the length in bytes of each message hashed for a digest.
+	 */
+	protected abstract int getMessageLength(Digest digest);
+
+	private static BatchDigest createBatch(Digest digest) {
+		return (digest instanceof BatchableDigest) ? ((BatchableDigest) digest).createBatch(BatchHasher.LANES) : null;
+	}
+
+	@Override
+	public boolean isResumable() {
+		return true;
+	}
+
+	@Override
+	public long getOutputLength(Digest digest) {
+		return Math.multiplyExact(digest.getDigestSize(), shard.getRecords(getTotalHashCount(digest)));
+	}
+
+	@Override
+	public Shard getShard() {
+		return shard;
+	}
+
+	/**
+	 * The window of slices in parallel mode, or one slice otherwise, each with
+	 * a batch of messages.
+	 */
+	@Override
+	public long getBufferLength(Digest digest) {
+		long slice = (long) SLICE_RECORDS * digest.getDigestSize() + (long) BatchHasher.LANES
+				* getMessageLength(digest);
+		if (parallelism > 1) {
+			return 2L * parallelism * slice;
+		}
+		return slice;
+	}
+
+	/**
+	 * Hashes a contiguous range of output records into one buffer.
+	 */
+	private class Slice extends RecursiveTask<byte[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final ThreadLocal<Digest> digests;
+		private final long from;
+		private final long to;
+
+		Slice(ThreadLocal<Digest> digests, long from, long to) {
+			this.digests = digests;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected byte[] compute() {
+			final Digest digest = digests.get();
+			final BatchDigest batch = createBatch(digest);
+			final GenerationMetrics.Recorder recorder = (batch != null) ? getMetrics().recorder(batch)
+					: getMetrics().recorder(digest);
+
+			byte[] output = new byte[(int) (to - from) * digest.getDigestSize()];
+			hash(digest, batch, from, to, output);
+			recorder.record(to - from);
+			return output;
+		}
+	}
+}
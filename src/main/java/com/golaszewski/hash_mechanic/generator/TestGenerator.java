@@ -1,22 +1,27 @@
 package com.golaszewski.hash_mechanic.generator;
 
+import java.io.IOException;
+
 import org.bouncycastle.crypto.Digest;
 
+import com.golaszewski.hash_mechanic.metrics.GenerationMetrics;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
 public class TestGenerator extends Generator {
 
 	@Override
-	public byte[] generateBytes(Digest digest) {
+	public void generate(Digest digest, HashSink sink) throws IOException {
 		// We can multiply the input bytes to increase our message space for the
 		// test.
 		final int inputBytes = digest.getDigestSize();
-		final int inputBits = inputBytes * Byte.SIZE;
-		final int outputLength = inputBits;
-		int outputOffset = 0;
+		final long outputLength = getOutputLength(digest);
 		
-		byte[] output = new byte[outputLength];
 		byte[] hash = new byte[digest.getDigestSize()];
 				
-		System.out.println("Generating " + output.length + " bytes.");
+		System.out.println("Generating " + outputLength + " bytes.");
+		getMetrics().start(getName(), digest.getAlgorithmName(), outputLength);
+		GenerationMetrics.Recorder recorder = getMetrics().recorder(digest);
+		int pending = 0;
 
 		// Create all zero initialization vector.
 		for (int i = 0; i < hash.length; i++) {
@@ -24,15 +29,26 @@ public class TestGenerator extends Generator {
 		}
 		
 		// Chain as many hashes as needed and concatenate their bits.
-		for (int i = 0; i < outputLength; i = i + inputBytes) {
+		for (long i = 0; i < outputLength; i = i + inputBytes) {
 			digest.update(hash, 0, hash.length);
 			digest.doFinal(hash, 0);
 			digest.reset();
-			System.arraycopy(hash, 0, output, outputOffset, hash.length);
-			outputOffset += digest.getDigestSize();
+			sink.write(hash, 0, hash.length);
+
+			if (++pending == REPORT_INTERVAL) {
+				recorder.record(pending);
+				pending = 0;
+			}
 		}
-		
-		return output;
+
+		recorder.record(pending);
+		getMetrics().finish();
+	}
+
+	@Override
+	public long getOutputLength(Digest digest) {
+		final long inputBits = digest.getDigestSize() * Byte.SIZE;
+		return inputBits;
 	}
 
 	@Override
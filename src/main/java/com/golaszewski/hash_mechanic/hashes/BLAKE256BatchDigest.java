@@ -0,0 +1,245 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import org.bouncycastle.util.Pack;
+
+/**
+ * Hashes batches of equal-length messages with BLAKE-256. Each state and
+ * message word is an array with one lane per message, and every G call is a
+ * loop over the lanes.
+ * 
+ * Unlike {@link BLAKE256Digest}, the bit counter is carried into its high
+ * word, so messages over 2^32 bits are hashed as the specification requires.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class BLAKE256BatchDigest implements BatchDigest {
+	private static final int BLOCK_SIZE = BLAKE256Digest.MESSAGE_BLOCK_BITS / Byte.SIZE;
+
+	private final int lanes;
+	private final int nRounds;
+
+	// Lane state. The chain value, the 16-word state and the message words
+	// each hold one array per word.
+	protected final int[][] h;
+	protected final int[][] v;
+	protected final int[][] m;
+
+	// The last one or two blocks of a single message, with the padding laid out
+	// for the current message length.
+	private final byte[] tail = new byte[2 * BLOCK_SIZE];
+
+	// Lane blocks compressed by this instance.
+	private long compressions;
+
+	/**
+	 * Creates a full BLAKE-256 batch digest.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 */
+	public BLAKE256BatchDigest(int lanes) {
+		this(lanes, BLAKE256Digest.NUM_ROUNDS);
+	}
+
+	/**
+	 * Creates a batch digest running a variable count of rounds.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 * @param nRounds
+	 *            - the number of rounds to run.
+	 */
+	protected BLAKE256BatchDigest(int lanes, int nRounds) {
+		this.lanes = lanes;
+		this.nRounds = nRounds;
+		this.h = new int[8][lanes];
+		this.v = new int[16][lanes];
+		this.m = new int[16][lanes];
+	}
+
+	public String getAlgorithmName() {
+		return BLAKE256Digest.ALGORITHM_NAME;
+	}
+
+	public int getDigestSize() {
+		return BLAKE256Digest.DIGEST_SIZE;
+	}
+
+	public int getLanes() {
+		return lanes;
+	}
+
+	public long getCompressions() {
+		return compressions;
+	}
+
+	public int getBlockSize() {
+		return BLOCK_SIZE;
+	}
+
+	public int[] chain(byte[] in, int inOff, int blocks) {
+		int[] chain = new int[h.length];
+
+		for (int w = 0; w < h.length; w++) {
+			h[w][0] = BLAKE256Digest.IV[w];
+		}
+		for (int k = 0; k < blocks; k++) {
+			load(in, inOff + k * BLOCK_SIZE, 0);
+			compress(1, (k + 1) * (long) BLAKE256Digest.MESSAGE_BLOCK_BITS, false);
+		}
+		for (int w = 0; w < h.length; w++) {
+			chain[w] = h[w][0];
+		}
+
+		return chain;
+	}
+
+	public void digest(int[] chain, int prefixBlocks, byte[] in, int inOff, int length, int count, byte[] out,
+			int outOff) {
+		if (count > lanes) {
+			throw new IllegalArgumentException("Batch of " + count + " exceeds " + lanes + " lanes!");
+		}
+
+		for (int w = 0; w < h.length; w++) {
+			int[] hw = h[w];
+			int value = (chain != null) ? chain[w] : BLAKE256Digest.IV[w];
+			for (int l = 0; l < count; l++) {
+				hw[l] = value;
+			}
+		}
+
+		// Whole blocks are loaded straight from the messages. A message ending
+		// on a block boundary keeps its last block here and gets a padding only
+		// block below.
+		int blocks = length / BLOCK_SIZE;
+		for (int k = prefixBlocks; k < blocks; k++) {
+			for (int l = 0; l < count; l++) {
+				load(in, inOff + l * length + k * BLOCK_SIZE, l);
+			}
+			compress(count, (k + 1) * (long) BLAKE256Digest.MESSAGE_BLOCK_BITS, false);
+		}
+
+		// The padding is the same for every message, only the leftover bytes
+		// differ.
+		int left = length - blocks * BLOCK_SIZE;
+		int tailBlocks = (left < 56) ? 1 : 2;
+		int tailLength = tailBlocks * BLOCK_SIZE;
+		long bits = length * (long) Byte.SIZE;
+		for (int i = left; i < tailLength; i++) {
+			tail[i] = 0;
+		}
+		tail[left] = (byte) 0x80;
+		tail[tailLength - Long.BYTES - 1] |= 0x01;
+		Pack.longToBigEndian(bits, tail, tailLength - Long.BYTES);
+
+		for (int k = 0; k < tailBlocks; k++) {
+			for (int l = 0; l < count; l++) {
+				if (k == 0) {
+					System.arraycopy(in, inOff + l * length + blocks * BLOCK_SIZE, tail, 0, left);
+				}
+				load(tail, k * BLOCK_SIZE, l);
+			}
+			// Blocks holding no message bits are hashed with a zero counter.
+			compress(count, bits, k > 0 || left == 0);
+		}
+
+		for (int l = 0; l < count; l++) {
+			for (int w = 0; w < h.length; w++) {
+				Pack.intToBigEndian(h[w][l], out, outOff + l * BLAKE256Digest.DIGEST_SIZE + w * Integer.BYTES);
+			}
+		}
+	}
+
+	/**
+	 * Loads one block into the message words of a lane.
+	 */
+	private void load(byte[] in, int inOff, int lane) {
+		for (int j = 0; j < m.length; j++) {
+			m[j][lane] = Pack.bigEndianToInt(in, inOff + j * Integer.BYTES);
+		}
+	}
+
+	/**
+	 * Compresses the loaded block of every lane into its chain value.
+	 * 
+	 * @param count
+	 *            - the number of lanes in use.
+	 * @param counter
+	 *            - the number of message bits hashed so far.
+	 * @param paddingBlock
+	 *            - whether the block holds only padding.
+	 */
+	private void compress(int count, long counter, boolean paddingBlock) {
+		compressions += count;
+		int t0 = paddingBlock ? 0 : (int) counter;
+		int t1 = paddingBlock ? 0 : (int) (counter >>> 32);
+
+		for (int w = 0; w < 8; w++) {
+			System.arraycopy(h[w], 0, v[w], 0, count);
+		}
+		fill(v[8], count, BLAKE256Digest.C[0]);
+		fill(v[9], count, BLAKE256Digest.C[1]);
+		fill(v[10], count, BLAKE256Digest.C[2]);
+		fill(v[11], count, BLAKE256Digest.C[3]);
+		fill(v[12], count, BLAKE256Digest.C[4] ^ t0);
+		fill(v[13], count, BLAKE256Digest.C[5] ^ t0);
+		fill(v[14], count, BLAKE256Digest.C[6] ^ t1);
+		fill(v[15], count, BLAKE256Digest.C[7] ^ t1);
+
+		for (int r = 0; r < nRounds; r++) {
+			G(count, 0, 4, 8, 12, 0, r);
+			G(count, 1, 5, 9, 13, 1, r);
+			G(count, 2, 6, 10, 14, 2, r);
+			G(count, 3, 7, 11, 15, 3, r);
+			G(count, 0, 5, 10, 15, 4, r);
+			G(count, 1, 6, 11, 12, 5, r);
+			G(count, 2, 7, 8, 13, 6, r);
+			G(count, 3, 4, 9, 14, 7, r);
+		}
+
+		updateChainValue(count);
+	}
+
+	/**
+	 * Applies the round function G to every lane.
+	 */
+	protected void G(int count, int a, int b, int c, int d, int i, int r) {
+		int[] sigma = BLAKE256Digest.S[r % 10];
+		int[] va = v[a], vb = v[b], vc = v[c], vd = v[d];
+		int[] mx = m[sigma[2 * i]], my = m[sigma[2 * i + 1]];
+		int cx = BLAKE256Digest.C[sigma[2 * i + 1]], cy = BLAKE256Digest.C[sigma[2 * i]];
+
+		for (int l = 0; l < count; l++) {
+			int xa = va[l] + vb[l] + (mx[l] ^ cx);
+			int xd = Integer.rotateRight(vd[l] ^ xa, 16);
+			int xc = vc[l] + xd;
+			int xb = Integer.rotateRight(vb[l] ^ xc, 12);
+			xa = xa + xb + (my[l] ^ cy);
+			xd = Integer.rotateRight(xd ^ xa, 8);
+			xc = xc + xd;
+			va[l] = xa;
+			vb[l] = Integer.rotateRight(xb ^ xc, 7);
+			vc[l] = xc;
+			vd[l] = xd;
+		}
+	}
+
+	/**
+	 * Updates the chain value of every lane as the last step of the
+	 * compression function. The salt is always zero.
+	 */
+	protected void updateChainValue(int count) {
+		for (int w = 0; w < 8; w++) {
+			int[] hw = h[w], lo = v[w], hi = v[w + 8];
+			for (int l = 0; l < count; l++) {
+				hw[l] ^= lo[l] ^ hi[l];
+			}
+		}
+	}
+
+	private static void fill(int[] lane, int count, int value) {
+		for (int l = 0; l < count; l++) {
+			lane[l] = value;
+		}
+	}
+}
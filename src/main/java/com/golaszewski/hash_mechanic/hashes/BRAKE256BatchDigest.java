@@ -0,0 +1,64 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+/**
+ * Hashes batches of equal-length messages with BRAKE-256, the BLAKE-256
+ * variant with identity permutations, no round constants and no feed forward.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class BRAKE256BatchDigest extends BLAKE256BatchDigest {
+
+	/**
+	 * Creates a batch digest running a variable count of rounds.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 * @param nRounds
+	 *            - the number of rounds to run.
+	 */
+	public BRAKE256BatchDigest(int lanes, int nRounds) {
+		super(lanes, nRounds);
+	}
+
+	@Override
+	public String getAlgorithmName() {
+		return BRAKE256Digest.ALGORITHM_NAME;
+	}
+
+	/**
+	 * Applies the round function G to every lane. The message words are taken
+	 * in order and the constants are zeroed.
+	 */
+	@Override
+	protected void G(int count, int a, int b, int c, int d, int i, int r) {
+		int[] va = v[a], vb = v[b], vc = v[c], vd = v[d];
+		int[] mx = m[2 * i], my = m[2 * i + 1];
+
+		for (int l = 0; l < count; l++) {
+			int xa = va[l] + vb[l] + mx[l];
+			int xd = Integer.rotateRight(vd[l] ^ xa, 16);
+			int xc = vc[l] + xd;
+			int xb = Integer.rotateRight(vb[l] ^ xc, 12);
+			xa = xa + xb + my[l];
+			xd = Integer.rotateRight(xd ^ xa, 8);
+			xc = xc + xd;
+			va[l] = xa;
+			vb[l] = Integer.rotateRight(xb ^ xc, 7);
+			vc[l] = xc;
+			vd[l] = xd;
+		}
+	}
+
+	/**
+	 * Replaces the chain value of every lane, omitting the feed forward.
+	 */
+	@Override
+	protected void updateChainValue(int count) {
+		for (int w = 0; w < 8; w++) {
+			int[] hw = h[w], lo = v[w], hi = v[w + 8];
+			for (int l = 0; l < count; l++) {
+				hw[l] = lo[l] ^ hi[l];
+			}
+		}
+	}
+}
@@ -1,9 +1,11 @@
 package com.golaszewski.hash_mechanic.hashes;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.util.Memoable;
+import org.bouncycastle.util.Pack;
 
-import org.bouncycastle.crypto.Digest;
+import com.golaszewski.hash_mechanic.hashes.kernels.BRAKE256Kernels;
+import com.golaszewski.hash_mechanic.hashes.kernels.RoundKernel;
 
 /**
  * Implementation of BLAKE-256 hash function.
@@ -13,7 +15,7 @@ import org.bouncycastle.crypto.Digest;
  * 
  * @author Ennis Golaszewski
  */
-public class BRAKE256Digest implements Digest {
+public class BRAKE256Digest implements ExtendedDigest, Memoable, BatchableDigest, CompressionCounter {
 	
 	/**
 	 * By default, we hash 14 rounds.
@@ -72,19 +74,32 @@ public class BRAKE256Digest implements Digest {
 			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
 			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
 
-	// Digest state variables.
-	private int[] h;
-	private int[] s;
-	private int[] t;
+	// Digest state variables. These are allocated once and reset in place.
+	private final int[] h = new int[8];
+	private final int[] s = new int[4];
+	private final int[] t = new int[2];
 	private int bufferLength;
-	private byte[] buffer;
+	private final byte[] buffer = new byte[64];
 	private boolean paddingBlock;
 
+	// Scratch space for the compression function and finalization.
+	private final int[] m = new int[16];
+	private final int[] v = new int[16];
+	private final byte[] single = new byte[1];
+	private final byte[] counter = new byte[Long.BYTES];
+
+	// Blocks compressed by this instance. Not part of the saved state.
+	private long compressions;
+
 	// Number of rounds to hash.
-	private int nRounds = NUM_ROUNDS;
+	private final int nRounds;
+
+	// The unrolled rounds, generated at build time. This is null for round
+	// counts that have no generated kernel.
+	private final RoundKernel rounds;
 
 	public BRAKE256Digest() {
-		reset();
+		this(NUM_ROUNDS);
 	}
 
 	/**
@@ -94,21 +109,29 @@ public class BRAKE256Digest implements Digest {
 	 *            - the number of rounds to run.
 	 */
 	public BRAKE256Digest(int nRounds) {
-		this();
 		this.nRounds = nRounds;
+		this.rounds = BRAKE256Kernels.forRounds(nRounds);
+		reset();
 	}
 
-	public int doFinal(byte[] out, int outOff) {
-		if (outOff != 0) {
-			throw new RuntimeException("Output offsets are not supported!");
-		}
+	/**
+	 * Creates a digest holding a copy of another digest's state and round
+	 * count.
+	 * 
+	 * @param other
+	 *            - the digest to copy.
+	 */
+	public BRAKE256Digest(BRAKE256Digest other) {
+		this(other.nRounds);
+		reset(other);
+	}
 
+	public int doFinal(byte[] out, int outOff) {
 		int low = t[0] + bufferLength * Byte.SIZE;
 		int high = t[1];
 
-		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
-		buffer.putInt(high);
-		buffer.putInt(low);
+		Pack.intToBigEndian(high, counter, 0);
+		Pack.intToBigEndian(low, counter, Integer.BYTES);
 
 		// TODO omitting step to handle hashing more than 2^32 bits. This isn't
 		// necessary for our current use case.
@@ -117,7 +140,7 @@ public class BRAKE256Digest implements Digest {
 		// padding.
 		if (bufferLength == 55) {
 			t[0] -= 8;
-			update(new byte[] { SINGLE_BYTE_PADDING }, 0, 1);
+			update(SINGLE_BYTE_PADDING);
 		} else {
 			// We have enough space to fill the block with the padding.
 			if (bufferLength < 55) {
@@ -133,25 +156,20 @@ public class BRAKE256Digest implements Digest {
 				t[0] -= 512 - (bufferLength * Byte.SIZE);
 				update(PADDING, 0, 64 - bufferLength);
 				t[0] -= 440;
-				update(Arrays.copyOfRange(PADDING, 1, PADDING.length), 0, 55);
+				update(PADDING, 1, 55);
 				paddingBlock = true;
 			}
 
-			update(new byte[] { FINAL_BYTE_PADDING }, 0, 1);
+			update(FINAL_BYTE_PADDING);
 			t[0] -= 8;
 		}
 
 		t[0] -= 64;
-		update(buffer.array(), 0, Long.BYTES);
+		update(counter, 0, Long.BYTES);
 
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[0]).array(), 0, out, 0, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[1]).array(), 0, out, 4, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[2]).array(), 0, out, 8, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[3]).array(), 0, out, 12, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[4]).array(), 0, out, 16, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[5]).array(), 0, out, 20, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[6]).array(), 0, out, 24, 4);
-		System.arraycopy(ByteBuffer.allocate(Integer.BYTES).putInt(h[7]).array(), 0, out, 28, 4);
+		for (int i = 0; i < h.length; i++) {
+			Pack.intToBigEndian(h[i], out, outOff + i * Integer.BYTES);
+		}
 
 		return DIGEST_SIZE;
 	}
@@ -164,12 +182,43 @@ public class BRAKE256Digest implements Digest {
 		return DIGEST_SIZE;
 	}
 
+	public int getByteLength() {
+		return MESSAGE_BLOCK_BITS / Byte.SIZE;
+	}
+
+	public Memoable copy() {
+		return new BRAKE256Digest(this);
+	}
+
+	public long getCompressions() {
+		return compressions;
+	}
+
+	public BatchDigest createBatch(int lanes) {
+		return new BRAKE256BatchDigest(lanes, nRounds);
+	}
+
+	/**
+	 * Restores a saved state in place. Only the buffered part of the message
+	 * block is copied.
+	 */
+	public void reset(Memoable memoable) {
+		BRAKE256Digest other = (BRAKE256Digest) memoable;
+
+		if (other.nRounds != nRounds) {
+			throw new IllegalArgumentException("Cannot restore a " + other.nRounds + " round state into a " + nRounds
+					+ " round digest!");
+		}
+
+		System.arraycopy(other.h, 0, h, 0, h.length);
+		System.arraycopy(other.s, 0, s, 0, s.length);
+		System.arraycopy(other.t, 0, t, 0, t.length);
+		System.arraycopy(other.buffer, 0, buffer, 0, other.bufferLength);
+		bufferLength = other.bufferLength;
+		paddingBlock = other.paddingBlock;
+	}
+
 	public void reset() {
-		h = new int[8];
-		s = new int[4];
-		t = new int[2];
-		// TODO constant for this array size.
-		buffer = new byte[64];
 
 		// Update state with initialization vectors.
 		h[0] = IV[0];
@@ -196,7 +245,8 @@ public class BRAKE256Digest implements Digest {
 	}
 
 	public void update(byte in) {
-		update(new byte[] { in }, 0, 1);
+		single[0] = in;
+		update(single, 0, 1);
 	}
 
 	public void update(byte[] in, int inOff, int inLen) {
@@ -213,7 +263,7 @@ public class BRAKE256Digest implements Digest {
 				t[1]++;
 			}
 
-			compress(buffer);
+			compress(buffer, 0);
 			inOff += fill;
 			inLen -= fill;
 			left = 0;
@@ -228,24 +278,24 @@ public class BRAKE256Digest implements Digest {
 				t[1]++;
 			}
 
-			byte[] bits = Arrays.copyOfRange(in, inOff, inOff + MESSAGE_BLOCK_BITS / Byte.SIZE);
-			compress(bits);
+			compress(in, inOff);
 
 			inOff += 64;
 			inLen -= 64;
 		}
 
-		if (inLen > 0) {
-			System.arraycopy(in, inOff, buffer, left, inLen);
-			bufferLength = left + inLen;
-		} else {
-			bufferLength = 0;
-		}
+		// Buffer whatever is left. An empty update keeps the buffered bytes.
+		System.arraycopy(in, inOff, buffer, left, inLen);
+		bufferLength = left + inLen;
 	}
 
-	private void compress(byte[] in) {
-		int[] m = convertMessage(in);
-		int[] v = new int[16];
+	/**
+	 * Compresses the 64-byte block starting at an offset into the chain value.
+	 * The block is read directly from the caller's array.
+	 */
+	private void compress(byte[] in, int inOff) {
+		compressions++;
+		convertMessage(in, inOff);
 
 		// Initialize v, the 16-word state that will be mutated by the round
 		// function G. The initialization process is
@@ -275,18 +325,21 @@ public class BRAKE256Digest implements Digest {
 		}
 
 		// Iterate a series of n (default 14) rounds, each round consisting of
-		// eight calls
-		// to the transformation function g of i,
-		// represented by G().
-		for (int r = 0; r < nRounds; r++) {
-			G(v, m, 0, 4, 8, 12, 0, r);
-			G(v, m, 1, 5, 9, 13, 1, r);
-			G(v, m, 2, 6, 10, 14, 2, r);
-			G(v, m, 3, 7, 11, 15, 3, r);
-			G(v, m, 0, 5, 10, 15, 4, r);
-			G(v, m, 1, 6, 11, 12, 5, r);
-			G(v, m, 2, 7, 8, 13, 6, r);
-			G(v, m, 3, 4, 9, 14, 7, r);
+		// eight calls to the transformation function g of i. Round counts with
+		// a generated kernel run it unrolled, the rest fall back to G().
+		if (rounds != null) {
+			rounds.apply(v, m);
+		} else {
+			for (int r = 0; r < nRounds; r++) {
+				G(v, m, 0, 4, 8, 12, 0, r);
+				G(v, m, 1, 5, 9, 13, 1, r);
+				G(v, m, 2, 6, 10, 14, 2, r);
+				G(v, m, 3, 7, 11, 15, 3, r);
+				G(v, m, 0, 5, 10, 15, 4, r);
+				G(v, m, 1, 6, 11, 12, 5, r);
+				G(v, m, 2, 7, 8, 13, 6, r);
+				G(v, m, 3, 4, 9, 14, 7, r);
+			}
 		}
 
 		// Finalize the process by updating our chain value H. As per the FLAKE
@@ -337,20 +390,16 @@ public class BRAKE256Digest implements Digest {
 	}
 
 	/**
-	 * Converts a message buffer representation from bytes to integers.
+	 * Loads a message block into the message words as big-endian integers.
 	 * 
 	 * @param in
 	 *            - a byte buffer.
-	 * @return an integer buffer with bitwise equivalence to the byte buffer.
+	 * @param inOff
+	 *            - the offset of the block in the buffer.
 	 */
-	private int[] convertMessage(byte[] in) {
-		int[] m = new int[16];
-		ByteBuffer buffer = ByteBuffer.wrap(in);
-
+	private void convertMessage(byte[] in, int inOff) {
 		for (int j = 0; j < m.length; j++) {
-			m[j] = buffer.getInt();
+			m[j] = Pack.bigEndianToInt(in, inOff + j * Integer.BYTES);
 		}
-
-		return m;
 	}
 }
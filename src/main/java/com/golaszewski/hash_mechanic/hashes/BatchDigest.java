@@ -0,0 +1,86 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+/**
+ * Hashes many messages of the same length at once. State is kept as a
+ * structure of arrays, one array per state word with one element per message,
+ * so every step of the compression function is a loop over independent lanes
+ * that the JIT can vectorize.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface BatchDigest extends CompressionCounter {
+	public String getAlgorithmName();
+
+	public int getDigestSize();
+
+	/**
+	 * @return the largest number of messages accepted by one call.
+	 */
+	public int getLanes();
+
+	/**
+	 * Hashes a batch of messages stored back to back.
+	 * 
+	 * @param in
+	 *            - the messages. This input is not modified.
+	 * @param inOff
+	 *            - the offset of the first message.
+	 * @param length
+	 *            - the length of every message in bytes.
+	 * @param count
+	 *            - the number of messages, at most {@link #getLanes()}.
+	 * @param out
+	 *            - receives the hashes back to back.
+	 * @param outOff
+	 *            - the offset of the first hash.
+	 */
+	public default void digest(byte[] in, int inOff, int length, int count, byte[] out, int outOff) {
+		digest(null, 0, in, inOff, length, count, out, outOff);
+	}
+
+	/**
+	 * @return the size of a message block in bytes.
+	 */
+	public int getBlockSize();
+
+	/**
+	 * Computes the chain value after the first whole blocks of one message,
+	 * for messages that share those blocks.
+	 * 
+	 * @param in
+	 *            - the message. This input is not modified.
+	 * @param inOff
+	 *            - the offset of the message.
+	 * @param blocks
+	 *            - the number of blocks to absorb.
+	 * @return the chain value after the blocks.
+	 */
+	public int[] chain(byte[] in, int inOff, int blocks);
+
+	/**
+	 * Hashes a batch of messages stored back to back that all begin with the
+	 * same blocks. Every lane starts from the chain value after those blocks,
+	 * so they are not hashed again.
+	 * 
+	 * @param chain
+	 *            - the chain value after the shared blocks, from
+	 *            {@link #chain}, or null to start from the IV.
+	 * @param prefixBlocks
+	 *            - the number of shared blocks, 0 if chain is null. They are
+	 *            skipped in every message.
+	 * @param in
+	 *            - the messages. This input is not modified.
+	 * @param inOff
+	 *            - the offset of the first message.
+	 * @param length
+	 *            - the length of every message in bytes.
+	 * @param count
+	 *            - the number of messages, at most {@link #getLanes()}.
+	 * @param out
+	 *            - receives the hashes back to back.
+	 * @param outOff
+	 *            - the offset of the first hash.
+	 */
+	public void digest(int[] chain, int prefixBlocks, byte[] in, int inOff, int length, int count, byte[] out,
+			int outOff);
+}
@@ -0,0 +1,20 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import org.bouncycastle.crypto.Digest;
+
+/**
+ * A digest that can create a batch version of itself with the same algorithm
+ * and round count.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface BatchableDigest extends Digest {
+	/**
+	 * Creates a batch digest matching this digest.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 * @return a new batch digest.
+	 */
+	public BatchDigest createBatch(int lanes);
+}
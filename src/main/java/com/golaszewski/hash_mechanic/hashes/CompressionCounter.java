@@ -0,0 +1,16 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+/**
+ * A hash function that counts calls to its compression function. The count is
+ * a plain field owned by the hashing thread, so it costs one increment per
+ * block and should only be read by that thread.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface CompressionCounter {
+	/**
+	 * @return the number of blocks compressed since this instance was created.
+	 *         Batch digests count one block per lane.
+	 */
+	public long getCompressions();
+}
@@ -0,0 +1,215 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import org.bouncycastle.util.Pack;
+
+/**
+ * Hashes batches of equal-length messages with MD5, optionally reduced to any
+ * number of steps. Each state and message word is an array with one lane per
+ * message. A step is a loop over the lanes, and the registers roll by swapping
+ * array references, so no lane data is copied between steps.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class MD5BatchDigest implements BatchDigest {
+	private static final int[] IV = { 0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476 };
+
+	private final int lanes;
+	private final int nSteps;
+
+	// Lane state. The chain value, the working registers and the message words
+	// each hold one array per word.
+	private final int[][] state;
+	private final int[][] work;
+	private final int[][] x;
+
+	// The last one or two blocks of a single message, with the padding laid out
+	// for the current message length.
+	private final byte[] tail = new byte[2 * MD5Engine.BLOCK_SIZE];
+
+	// Lane blocks compressed by this instance.
+	private long compressions;
+
+	/**
+	 * Creates a full MD5 batch digest.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 */
+	public MD5BatchDigest(int lanes) {
+		this(lanes, MD5Steps.NUM_STEPS);
+	}
+
+	/**
+	 * Creates a batch digest that runs only the specified number of steps.
+	 * 
+	 * @param lanes
+	 *            - the largest number of messages per batch.
+	 * @param nSteps
+	 *            - the number of steps, from 0 to 64.
+	 */
+	public MD5BatchDigest(int lanes, int nSteps) {
+		if (nSteps < 0 || nSteps > MD5Steps.NUM_STEPS) {
+			throw new IllegalArgumentException("MD5 has " + MD5Steps.NUM_STEPS + " steps, not " + nSteps + "!");
+		}
+		this.lanes = lanes;
+		this.nSteps = nSteps;
+		this.state = new int[4][lanes];
+		this.work = new int[4][lanes];
+		this.x = new int[16][lanes];
+	}
+
+	public String getAlgorithmName() {
+		return MD5Wrapper.DIGEST_NAME;
+	}
+
+	public int getDigestSize() {
+		return MD5Engine.DIGEST_SIZE;
+	}
+
+	public int getLanes() {
+		return lanes;
+	}
+
+	public long getCompressions() {
+		return compressions;
+	}
+
+	public int getBlockSize() {
+		return MD5Engine.BLOCK_SIZE;
+	}
+
+	public int[] chain(byte[] in, int inOff, int blocks) {
+		int[] chain = new int[4];
+
+		for (int w = 0; w < 4; w++) {
+			state[w][0] = IV[w];
+		}
+		for (int k = 0; k < blocks; k++) {
+			load(in, inOff + k * MD5Engine.BLOCK_SIZE, 0);
+			transform(1);
+		}
+		for (int w = 0; w < 4; w++) {
+			chain[w] = state[w][0];
+		}
+
+		return chain;
+	}
+
+	public void digest(int[] chain, int prefixBlocks, byte[] in, int inOff, int length, int count, byte[] out,
+			int outOff) {
+		if (count > lanes) {
+			throw new IllegalArgumentException("Batch of " + count + " exceeds " + lanes + " lanes!");
+		}
+
+		for (int w = 0; w < 4; w++) {
+			int[] sw = state[w];
+			int value = (chain != null) ? chain[w] : IV[w];
+			for (int l = 0; l < count; l++) {
+				sw[l] = value;
+			}
+		}
+
+		// Whole blocks are decoded straight from the messages.
+		int blocks = length / MD5Engine.BLOCK_SIZE;
+		for (int k = prefixBlocks; k < blocks; k++) {
+			for (int l = 0; l < count; l++) {
+				load(in, inOff + l * length + k * MD5Engine.BLOCK_SIZE, l);
+			}
+			transform(count);
+		}
+
+		// The padding is the same for every message, only the leftover bytes
+		// differ.
+		int left = length - blocks * MD5Engine.BLOCK_SIZE;
+		int tailBlocks = (left < 56) ? 1 : 2;
+		int tailLength = tailBlocks * MD5Engine.BLOCK_SIZE;
+		for (int i = left; i < tailLength; i++) {
+			tail[i] = 0;
+		}
+		tail[left] = (byte) 0x80;
+		Pack.longToLittleEndian(length * (long) Byte.SIZE, tail, tailLength - Long.BYTES);
+
+		for (int k = 0; k < tailBlocks; k++) {
+			for (int l = 0; l < count; l++) {
+				if (k == 0) {
+					System.arraycopy(in, inOff + l * length + blocks * MD5Engine.BLOCK_SIZE, tail, 0, left);
+				}
+				load(tail, k * MD5Engine.BLOCK_SIZE, l);
+			}
+			transform(count);
+		}
+
+		for (int l = 0; l < count; l++) {
+			for (int w = 0; w < 4; w++) {
+				Pack.intToLittleEndian(state[w][l], out, outOff + l * MD5Engine.DIGEST_SIZE + w * Integer.BYTES);
+			}
+		}
+	}
+
+	/**
+	 * Decodes one block into the message words of a lane.
+	 */
+	private void load(byte[] in, int inOff, int lane) {
+		for (int i = 0; i < x.length; i++) {
+			x[i][lane] = Pack.littleEndianToInt(in, inOff + i * Integer.BYTES);
+		}
+	}
+
+	/**
+	 * Runs the steps over every lane and feeds the result forward. Each step
+	 * writes its new word over the register it retires, so after the steps
+	 * every working array still holds the word that started in the same
+	 * position of the chain value.
+	 */
+	private void transform(int count) {
+		compressions += count;
+		for (int w = 0; w < 4; w++) {
+			System.arraycopy(state[w], 0, work[w], 0, count);
+		}
+
+		int[] a = work[0], b = work[1], c = work[2], d = work[3];
+		int[] t;
+
+		for (int step = 0; step < nSteps; step++) {
+			int[] xs = x[MD5Steps.MESSAGE_INDEX[step]];
+			int k = MD5Steps.CONSTANT[step];
+			int s = MD5Steps.SHIFT[step];
+
+			switch (step / MD5Steps.STEPS_PER_ROUND) {
+			case 0:
+				for (int l = 0; l < count; l++) {
+					a[l] = b[l] + Integer.rotateLeft(a[l] + ((b[l] & c[l]) | (~b[l] & d[l])) + xs[l] + k, s);
+				}
+				break;
+			case 1:
+				for (int l = 0; l < count; l++) {
+					a[l] = b[l] + Integer.rotateLeft(a[l] + ((b[l] & d[l]) | (c[l] & ~d[l])) + xs[l] + k, s);
+				}
+				break;
+			case 2:
+				for (int l = 0; l < count; l++) {
+					a[l] = b[l] + Integer.rotateLeft(a[l] + (b[l] ^ c[l] ^ d[l]) + xs[l] + k, s);
+				}
+				break;
+			default:
+				for (int l = 0; l < count; l++) {
+					a[l] = b[l] + Integer.rotateLeft(a[l] + (c[l] ^ (b[l] | ~d[l])) + xs[l] + k, s);
+				}
+				break;
+			}
+
+			t = d;
+			d = c;
+			c = b;
+			b = a;
+			a = t;
+		}
+
+		for (int w = 0; w < 4; w++) {
+			int[] sw = state[w], ww = work[w];
+			for (int l = 0; l < count; l++) {
+				sw[l] += ww[l];
+			}
+		}
+	}
+}
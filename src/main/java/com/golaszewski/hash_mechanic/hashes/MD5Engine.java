@@ -0,0 +1,224 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import org.bouncycastle.util.Pack;
+
+import com.golaszewski.hash_mechanic.hashes.kernels.MD5Kernels;
+import com.golaszewski.hash_mechanic.hashes.kernels.RoundKernel;
+
+/**
+ * A reusable MD5 engine with optional round reduction. All state is allocated
+ * once and reset in place, message words are decoded straight from the
+ * caller's array, and finalization neither allocates nor locks. Instances are
+ * not thread-safe; use one per thread.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class MD5Engine {
+	/**
+	 * The number of rounds in full MD5.
+	 */
+	public static final int NUM_ROUNDS = 4;
+
+	/**
+	 * The size of the digest in bytes.
+	 */
+	public static final int DIGEST_SIZE = 16;
+
+	/**
+	 * The size of a message block in bytes.
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	private static final int[] IV = { 0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476 };
+	private static final byte[] PADDING = new byte[BLOCK_SIZE];
+
+	static {
+		PADDING[0] = (byte) 0x80;
+	}
+
+	// Engine state variables. These are allocated once and reset in place.
+	private final int[] state = new int[4];
+	private final int[] x = new int[16];
+	private final byte[] buffer = new byte[BLOCK_SIZE];
+	private final byte[] length = new byte[Long.BYTES];
+	private int bufferLength;
+	private long byteCount;
+
+	// Blocks compressed by this engine. Not part of the saved state.
+	private long compressions;
+
+	private final RoundKernel kernel;
+	private final int nSteps;
+
+	/**
+	 * Creates an engine that runs only the specified number of rounds. Every
+	 * whole half round reached by nRounds is run, so 2.7 runs two and a half
+	 * rounds, matching the reduced-round MD5 this project has always used.
+	 * 
+	 * @param nRounds
+	 *            - the number of rounds, from 0 to 4.
+	 */
+	public MD5Engine(double nRounds) {
+		this(MD5Kernels.forHalfRounds(halfRounds(nRounds)), halfRounds(nRounds) * 8);
+	}
+
+	/**
+	 * Creates an engine holding a copy of another engine's state and round
+	 * count.
+	 * 
+	 * @param other
+	 *            - the engine to copy.
+	 */
+	public MD5Engine(MD5Engine other) {
+		this(other.kernel, other.nSteps);
+		reset(other);
+	}
+
+	private MD5Engine(RoundKernel kernel, int nSteps) {
+		this.kernel = kernel;
+		this.nSteps = nSteps;
+		reset();
+	}
+
+	/**
+	 * Creates an engine that runs only the specified number of steps. Whole
+	 * half rounds run the generated kernel; any other count runs the
+	 * table-driven step kernel.
+	 * 
+	 * @param nSteps
+	 *            - the number of steps, from 0 to 64.
+	 * @return a new engine.
+	 */
+	public static MD5Engine withSteps(int nSteps) {
+		if (nSteps % 8 == 0 && nSteps >= 0 && nSteps <= MD5Steps.NUM_STEPS) {
+			return new MD5Engine(MD5Kernels.forHalfRounds(nSteps / 8), nSteps);
+		}
+		return new MD5Engine(new MD5Steps(nSteps), nSteps);
+	}
+
+	/**
+	 * Converts a fractional round count into whole half rounds.
+	 */
+	static int halfRounds(double nRounds) {
+		return (int) Math.max(0, Math.min(2 * NUM_ROUNDS, Math.floor(nRounds * 2)));
+	}
+
+	/**
+	 * Restores the initial state so the engine can hash a new message.
+	 */
+	public void reset() {
+		state[0] = IV[0];
+		state[1] = IV[1];
+		state[2] = IV[2];
+		state[3] = IV[3];
+		bufferLength = 0;
+		byteCount = 0;
+	}
+
+	/**
+	 * Restores a saved state in place. Only the buffered part of the message
+	 * block is copied.
+	 * 
+	 * @param other
+	 *            - an engine running the same number of steps.
+	 */
+	public void reset(MD5Engine other) {
+		if (other.nSteps != nSteps) {
+			throw new IllegalArgumentException("Cannot restore a " + other.nSteps + " step state into a " + nSteps
+					+ " step engine!");
+		}
+
+		System.arraycopy(other.state, 0, state, 0, state.length);
+		System.arraycopy(other.buffer, 0, buffer, 0, other.bufferLength);
+		bufferLength = other.bufferLength;
+		byteCount = other.byteCount;
+	}
+
+	/**
+	 * @return the number of MD5 steps this engine runs.
+	 */
+	public int getSteps() {
+		return nSteps;
+	}
+
+	/**
+	 * @return the number of blocks compressed by this engine.
+	 */
+	public long getCompressions() {
+		return compressions;
+	}
+
+	public void update(byte in) {
+		buffer[bufferLength++] = in;
+		byteCount++;
+
+		if (bufferLength == BLOCK_SIZE) {
+			transform(buffer, 0);
+			bufferLength = 0;
+		}
+	}
+
+	public void update(byte[] in, int inOff, int inLen) {
+		byteCount += inLen;
+
+		// Top up a partially filled buffer first.
+		if (bufferLength != 0) {
+			int fill = Math.min(BLOCK_SIZE - bufferLength, inLen);
+			System.arraycopy(in, inOff, buffer, bufferLength, fill);
+			bufferLength += fill;
+			inOff += fill;
+			inLen -= fill;
+
+			if (bufferLength < BLOCK_SIZE) {
+				return;
+			}
+
+			transform(buffer, 0);
+			bufferLength = 0;
+		}
+
+		// Whole blocks are transformed straight from the input.
+		while (inLen >= BLOCK_SIZE) {
+			transform(in, inOff);
+			inOff += BLOCK_SIZE;
+			inLen -= BLOCK_SIZE;
+		}
+
+		System.arraycopy(in, inOff, buffer, 0, inLen);
+		bufferLength = inLen;
+	}
+
+	/**
+	 * Pads the message, writes the hash and resets the engine.
+	 * 
+	 * @param out
+	 *            - the array to write the hash to.
+	 * @param outOff
+	 *            - the offset into the output array.
+	 */
+	public void doFinal(byte[] out, int outOff) {
+		Pack.longToLittleEndian(byteCount * Byte.SIZE, length, 0);
+
+		int padLength = (bufferLength < 56) ? (56 - bufferLength) : (120 - bufferLength);
+		update(PADDING, 0, padLength);
+		update(length, 0, Long.BYTES);
+
+		for (int i = 0; i < state.length; i++) {
+			Pack.intToLittleEndian(state[i], out, outOff + i * Integer.BYTES);
+		}
+
+		reset();
+	}
+
+	/**
+	 * Decodes a block into little-endian words and runs the kernel over it.
+	 */
+	private void transform(byte[] in, int inOff) {
+		compressions++;
+		for (int i = 0; i < x.length; i++) {
+			x[i] = Pack.littleEndianToInt(in, inOff + i * Integer.BYTES);
+		}
+
+		kernel.apply(state, x);
+	}
+}
@@ -0,0 +1,140 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import com.golaszewski.hash_mechanic.hashes.kernels.RoundKernel;
+
+/**
+ * A table-driven MD5 kernel that runs any number of steps from 0 to 64. Each
+ * step reads its message index, rotation and additive constant from a table.
+ * The boolean function is fixed for each run of sixteen steps, so the step loop
+ * is split at round boundaries instead of switching on the function per step.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class MD5Steps implements RoundKernel {
+	/**
+	 * The number of steps in full MD5.
+	 */
+	public static final int NUM_STEPS = 64;
+
+	/**
+	 * The number of steps sharing one boolean function.
+	 */
+	public static final int STEPS_PER_ROUND = 16;
+
+	/**
+	 * The message word read by each step.
+	 */
+	static final int[] MESSAGE_INDEX = new int[NUM_STEPS];
+
+	/**
+	 * The left rotation applied by each step.
+	 */
+	static final int[] SHIFT = new int[NUM_STEPS];
+
+	/**
+	 * The additive constant of each step.
+	 */
+	static final int[] CONSTANT = { 0xd76aa478, 0xe8c7b756, 0x242070db, 0xc1bdceee, 0xf57c0faf, 0x4787c62a,
+			0xa8304613, 0xfd469501, 0x698098d8, 0x8b44f7af, 0xffff5bb1, 0x895cd7be, 0x6b901122, 0xfd987193,
+			0xa679438e, 0x49b40821, 0xf61e2562, 0xc040b340, 0x265e5a51, 0xe9b6c7aa, 0xd62f105d, 0x02441453,
+			0xd8a1e681, 0xe7d3fbc8, 0x21e1cde6, 0xc33707d6, 0xf4d50d87, 0x455a14ed, 0xa9e3e905, 0xfcefa3f8,
+			0x676f02d9, 0x8d2a4c8a, 0xfffa3942, 0x8771f681, 0x6d9d6122, 0xfde5380c, 0xa4beea44, 0x4bdecfa9,
+			0xf6bb4b60, 0xbebfbc70, 0x289b7ec6, 0xeaa127fa, 0xd4ef3085, 0x04881d05, 0xd9d4d039, 0xe6db99e5,
+			0x1fa27cf8, 0xc4ac5665, 0xf4292244, 0x432aff97, 0xab9423a7, 0xfc93a039, 0x655b59c3, 0x8f0ccc92,
+			0xffeff47d, 0x85845dd1, 0x6fa87e4f, 0xfe2ce6e0, 0xa3014314, 0x4e0811a1, 0xf7537e82, 0xbd3af235,
+			0x2ad7d2bb, 0xeb86d391 };
+
+	static {
+		final int[][] shifts = { { 7, 12, 17, 22 }, { 5, 9, 14, 20 }, { 4, 11, 16, 23 }, { 6, 10, 15, 21 } };
+
+		for (int i = 0; i < STEPS_PER_ROUND; i++) {
+			MESSAGE_INDEX[i] = i;
+			MESSAGE_INDEX[i + 16] = (1 + 5 * i) % 16;
+			MESSAGE_INDEX[i + 32] = (5 + 3 * i) % 16;
+			MESSAGE_INDEX[i + 48] = (7 * i) % 16;
+		}
+
+		for (int i = 0; i < NUM_STEPS; i++) {
+			SHIFT[i] = shifts[i / STEPS_PER_ROUND][i % 4];
+		}
+	}
+
+	private final int nSteps;
+
+	/**
+	 * @param nSteps
+	 *            - the number of steps to run, from 0 to 64.
+	 */
+	public MD5Steps(int nSteps) {
+		if (nSteps < 0 || nSteps > NUM_STEPS) {
+			throw new IllegalArgumentException("MD5 has " + NUM_STEPS + " steps, not " + nSteps + "!");
+		}
+		this.nSteps = nSteps;
+	}
+
+	/**
+	 * Runs the steps over the state and feeds the result forward. Registers roll
+	 * after every step, so the new word is always b.
+	 */
+	public void apply(int[] state, int[] x) {
+		int a = state[0], b = state[1], c = state[2], d = state[3];
+		int step = 0;
+		int t;
+
+		for (int end = Math.min(nSteps, 16); step < end; step++) {
+			t = d;
+			d = c;
+			c = b;
+			b = b + Integer.rotateLeft(a + ((b & d) | (~b & t)) + x[MESSAGE_INDEX[step]] + CONSTANT[step], SHIFT[step]);
+			a = t;
+		}
+
+		for (int end = Math.min(nSteps, 32); step < end; step++) {
+			t = d;
+			d = c;
+			c = b;
+			b = b + Integer.rotateLeft(a + ((b & t) | (d & ~t)) + x[MESSAGE_INDEX[step]] + CONSTANT[step], SHIFT[step]);
+			a = t;
+		}
+
+		for (int end = Math.min(nSteps, 48); step < end; step++) {
+			t = d;
+			d = c;
+			c = b;
+			b = b + Integer.rotateLeft(a + (b ^ d ^ t) + x[MESSAGE_INDEX[step]] + CONSTANT[step], SHIFT[step]);
+			a = t;
+		}
+
+		for (; step < nSteps; step++) {
+			t = d;
+			d = c;
+			c = b;
+			b = b + Integer.rotateLeft(a + (d ^ (b | ~t)) + x[MESSAGE_INDEX[step]] + CONSTANT[step], SHIFT[step]);
+			a = t;
+		}
+
+		// After n steps the word that started in position w sits n positions
+		// further along the rolled registers.
+		switch (nSteps % 4) {
+		case 0:
+			feedForward(state, a, b, c, d);
+			break;
+		case 1:
+			feedForward(state, b, c, d, a);
+			break;
+		case 2:
+			feedForward(state, c, d, a, b);
+			break;
+		default:
+			feedForward(state, d, a, b, c);
+			break;
+		}
+	}
+
+	private static void feedForward(int[] state, int a, int b, int c, int d) {
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
+	}
+}
@@ -1,29 +1,25 @@
 package com.golaszewski.hash_mechanic.hashes;
 
-import org.bouncycastle.crypto.Digest;
-
-import com.golaszewski.hash_mechanic.hashes.thirdparty.MD5;
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.util.Memoable;
 
 /**
- * Implements an MD5 digest compatible with the bouncycastle API by wrapping an
- * existing MD5 implementation.
+ * Implements an MD5 digest compatible with the bouncycastle API by wrapping a
+ * reusable MD5 engine.
  * 
  * @author Ennis Golaszewski
  */
-public class MD5Wrapper implements Digest {
+public class MD5Wrapper implements ExtendedDigest, Memoable, BatchableDigest, CompressionCounter {
 	public static final int DIGEST_SIZE = 16;
 	public static final String DIGEST_NAME = "MD5";
 
-	private MD5 digest;
-
-	// We can optionally specify the number of rounds to hash.
-	double nRounds = 0;
+	private final MD5Engine digest;
 
 	/**
 	 * Creates and initializes a new MD5 digest.
 	 */
 	public MD5Wrapper() {
-		digest = new MD5();
+		digest = new MD5Engine(MD5Engine.NUM_ROUNDS);
 	}
 
 	/**
@@ -37,12 +33,37 @@ public class MD5Wrapper implements Digest {
 	 *            algorithm are discarded.
 	 */
 	public MD5Wrapper(double nRounds) {
-		digest = new MD5(nRounds);
-		this.nRounds = nRounds;
+		digest = new MD5Engine(nRounds);
+	}
+
+	/**
+	 * Creates a digest holding a copy of another digest's state.
+	 * 
+	 * @param other
+	 *            - the digest to copy.
+	 */
+	public MD5Wrapper(MD5Wrapper other) {
+		this(new MD5Engine(other.digest));
+	}
+
+	private MD5Wrapper(MD5Engine digest) {
+		this.digest = digest;
+	}
+
+	/**
+	 * Creates and initializes an MD5 digest that runs only the specified number
+	 * of steps. There are 16 steps to a round.
+	 * 
+	 * @param nSteps
+	 *            - the number of steps, from 0 to 64.
+	 * @return a new digest.
+	 */
+	public static MD5Wrapper withSteps(int nSteps) {
+		return new MD5Wrapper(MD5Engine.withSteps(nSteps));
 	}
 
 	/**
-	 * Extracts and returns the hash.
+	 * Extracts and returns the hash, then resets the digest.
 	 * 
 	 * @param out
 	 *            - the array to write the hash bits to. Should have enough
@@ -52,8 +73,7 @@ public class MD5Wrapper implements Digest {
 	 *            - the offset into the output array.
 	 */
 	public int doFinal(byte[] out, int outOff) {
-		byte[] hash = digest.Final();
-		System.arraycopy(hash, 0, out, outOff, DIGEST_SIZE);
+		digest.doFinal(out, outOff);
 		return DIGEST_SIZE;
 	}
 
@@ -65,20 +85,36 @@ public class MD5Wrapper implements Digest {
 		return DIGEST_SIZE;
 	}
 
+	public int getByteLength() {
+		return MD5Engine.BLOCK_SIZE;
+	}
+
+	public Memoable copy() {
+		return new MD5Wrapper(this);
+	}
+
+	public long getCompressions() {
+		return digest.getCompressions();
+	}
+
+	public BatchDigest createBatch(int lanes) {
+		return new MD5BatchDigest(lanes, digest.getSteps());
+	}
+
+	public void reset(Memoable other) {
+		digest.reset(((MD5Wrapper) other).digest);
+	}
+
 	public void reset() {
-		if (nRounds == 0) {
-			digest = new MD5();
-		} else {
-			digest = new MD5(nRounds);
-		}
+		digest.reset();
 	}
 
 	public void update(byte in) {
-		digest.Update(in);
+		digest.update(in);
 	}
 
 	public void update(byte[] in, int inOff, int inLen) {
-		digest.Update(in, inOff, inLen);
+		digest.update(in, inOff, inLen);
 	}
 
 }
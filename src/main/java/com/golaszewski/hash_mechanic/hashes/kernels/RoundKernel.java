@@ -0,0 +1,21 @@
+package com.golaszewski.hash_mechanic.hashes.kernels;
+
+/**
+ * A compression kernel for a fixed algorithm and round count. Implementations
+ * are generated at build time as straight-line code with every state and
+ * message index resolved to a constant, so no round counters or permutation
+ * lookups are evaluated while hashing.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface RoundKernel {
+	/**
+	 * Applies the rounds to the state in place.
+	 * 
+	 * @param state
+	 *            - the working state of the algorithm.
+	 * @param message
+	 *            - the 16 message words of the block being compressed.
+	 */
+	void apply(int[] state, int[] message);
+}
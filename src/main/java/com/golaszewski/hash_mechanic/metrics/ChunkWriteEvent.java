@@ -0,0 +1,30 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One write of buffered output to a dataset file.
+ * 
+ * @author Ennis Golaszewski
+ */
+@Name("com.golaszewski.hash_mechanic.ChunkWrite")
+@Label("Chunk Write")
+@Category("Hash Mechanic")
+@Description("One write of buffered output to a dataset file")
+@StackTrace(false)
+class ChunkWriteEvent extends Event {
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Latency")
+	@Timespan
+	long latency;
+}
@@ -0,0 +1,39 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A generator run from start to finish.
+ * 
+ * @author Ennis Golaszewski
+ */
+@Name("com.golaszewski.hash_mechanic.Generation")
+@Label("Generation")
+@Category("Hash Mechanic")
+@Description("A generator run from start to finish")
+class GenerationEvent extends Event {
+	@Label("Generator")
+	String generator;
+
+	@Label("Digest")
+	String digest;
+
+	@Label("Hashes")
+	long hashes;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Compressions")
+	long compressions;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+}
@@ -0,0 +1,256 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+import com.golaszewski.hash_mechanic.hashes.CompressionCounter;
+import com.golaszewski.hash_mechanic.output.WriteListener;
+
+/**
+ * Counts the work done by a generator run. Hashing threads report through a
+ * {@link Recorder} once per slice or row, never per hash, so the counters stay
+ * off the hot path. Sinks report each write to the file. Every getter may be
+ * called from any thread while the run is in progress.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class GenerationMetrics implements GenerationMetricsMBean, WriteListener {
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private final LongAdder hashes = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder compressions = new LongAdder();
+	private final LongAdder allocated = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder writeNanos = new LongAdder();
+	private final LongAccumulator maxWriteNanos = new LongAccumulator(Math::max, 0);
+
+	private volatile String generator = "";
+	private volatile String digest = "";
+	private volatile long totalBytes;
+	private volatile long startNanos = System.nanoTime();
+	private volatile long endNanos = -1;
+	private GenerationEvent event;
+
+	/**
+	 * Clears the counters and starts timing a new run.
+	 * 
+	 * @param generator
+	 *            - the name of the generator.
+	 * @param digest
+	 *            - the name of the hash function.
+	 * @param totalBytes
+	 *            - the number of bytes the run will produce.
+	 */
+	public void start(String generator, String digest, long totalBytes) {
+		hashes.reset();
+		bytes.reset();
+		compressions.reset();
+		allocated.reset();
+		writes.reset();
+		writeNanos.reset();
+		maxWriteNanos.reset();
+
+		this.generator = generator;
+		this.digest = digest;
+		this.totalBytes = totalBytes;
+		this.endNanos = -1;
+		this.startNanos = System.nanoTime();
+
+		event = new GenerationEvent();
+		event.begin();
+	}
+
+	/**
+	 * Stops timing the run and records it as a flight recorder event.
+	 */
+	public void finish() {
+		endNanos = System.nanoTime();
+
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.generator = generator;
+				event.digest = digest;
+				event.hashes = getHashes();
+				event.bytes = getBytes();
+				event.compressions = getCompressions();
+				event.allocated = getAllocatedBytes();
+				event.commit();
+			}
+			event = null;
+		}
+	}
+
+	/**
+	 * Creates a recorder for a thread hashing with a digest.
+	 */
+	public Recorder recorder(Digest digest) {
+		return new Recorder(digest.getDigestSize(), digest instanceof CompressionCounter ? (CompressionCounter) digest
+				: null);
+	}
+
+	/**
+	 * Creates a recorder for a thread hashing with a batch digest.
+	 */
+	public Recorder recorder(BatchDigest digest) {
+		return new Recorder(digest.getDigestSize(), digest);
+	}
+
+	public void written(long bytes, long nanos) {
+		writes.increment();
+		writeNanos.add(nanos);
+		maxWriteNanos.accumulate(nanos);
+
+		ChunkWriteEvent event = new ChunkWriteEvent();
+		if (event.shouldCommit()) {
+			event.bytes = bytes;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	public String getGenerator() {
+		return generator;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public boolean isRunning() {
+		return endNanos < 0;
+	}
+
+	public long getHashes() {
+		return hashes.sum();
+	}
+
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public double getFractionDone() {
+		return totalBytes == 0 ? 1 : getBytes() / (double) totalBytes;
+	}
+
+	public double getElapsedSeconds() {
+		long end = endNanos;
+		return ((end < 0 ? System.nanoTime() : end) - startNanos) / 1e9;
+	}
+
+	public double getHashesPerSecond() {
+		double elapsed = getElapsedSeconds();
+		return elapsed > 0 ? getHashes() / elapsed : 0;
+	}
+
+	public double getEtaSeconds() {
+		long done = getBytes();
+		if (done == 0) {
+			return -1;
+		}
+		return getElapsedSeconds() * (totalBytes - done) / done;
+	}
+
+	public long getCompressions() {
+		return compressions.sum();
+	}
+
+	public double getCompressionsPerHash() {
+		long count = getHashes();
+		return count == 0 ? 0 : getCompressions() / (double) count;
+	}
+
+	public long getAllocatedBytes() {
+		return allocated.sum();
+	}
+
+	public long getWrites() {
+		return writes.sum();
+	}
+
+	public double getMeanWriteMillis() {
+		long count = getWrites();
+		return count == 0 ? 0 : writeNanos.sum() / 1e6 / count;
+	}
+
+	public double getMaxWriteMillis() {
+		return maxWriteNanos.get() / 1e6;
+	}
+
+	/**
+	 * @return a one-line summary of the run so far.
+	 */
+	public String getProgressLine() {
+		double eta = getEtaSeconds();
+		return String.format("%d of %d bytes (%.1f%%), %d hashes at %.0f/s, ETA %s, %.2f compressions/hash,"
+				+ " %d bytes allocated, %d writes averaging %.2f ms (max %.2f ms)", getBytes(), totalBytes,
+				100 * getFractionDone(), getHashes(), getHashesPerSecond(), eta < 0 ? "unknown" : String.format(
+						"%.0fs", eta), getCompressionsPerHash(), getAllocatedBytes(), getWrites(),
+				getMeanWriteMillis(), getMaxWriteMillis());
+	}
+
+	/**
+	 * Allocation is only counted where the JVM tracks it per thread.
+	 */
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			return (com.sun.management.ThreadMXBean) bean;
+		}
+		return null;
+	}
+
+	private static long allocatedByCurrentThread() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Reports the progress of one hashing thread. Compressions and allocation
+	 * are measured as deltas since the last report, so a recorder must only
+	 * be used by the thread that created it.
+	 */
+	public class Recorder {
+		private final int digestSize;
+		private final CompressionCounter counter;
+		private long lastCompressions;
+		private long lastAllocated;
+
+		private Recorder(int digestSize, CompressionCounter counter) {
+			this.digestSize = digestSize;
+			this.counter = counter;
+			this.lastCompressions = counter == null ? 0 : counter.getCompressions();
+			this.lastAllocated = allocatedByCurrentThread();
+		}
+
+		/**
+		 * Adds a run of finished hashes to the totals.
+		 * 
+		 * @param count
+		 *            - the number of hashes finished since the last report.
+		 */
+		public void record(long count) {
+			hashes.add(count);
+			bytes.add(count * digestSize);
+
+			if (counter != null) {
+				long now = counter.getCompressions();
+				compressions.add(now - lastCompressions);
+				lastCompressions = now;
+			}
+
+			long now = allocatedByCurrentThread();
+			allocated.add(now - lastAllocated);
+			lastAllocated = now;
+		}
+	}
+}
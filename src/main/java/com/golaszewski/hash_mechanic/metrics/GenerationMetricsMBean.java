@@ -0,0 +1,43 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+/**
+ * The JMX view of a generator run.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface GenerationMetricsMBean {
+	public String getGenerator();
+
+	public String getDigest();
+
+	public boolean isRunning();
+
+	public long getHashes();
+
+	public long getBytes();
+
+	public long getTotalBytes();
+
+	public double getFractionDone();
+
+	public double getElapsedSeconds();
+
+	public double getHashesPerSecond();
+
+	/**
+	 * @return the estimated seconds left, or -1 before any progress.
+	 */
+	public double getEtaSeconds();
+
+	public long getCompressions();
+
+	public double getCompressionsPerHash();
+
+	public long getAllocatedBytes();
+
+	public long getWrites();
+
+	public double getMeanWriteMillis();
+
+	public double getMaxWriteMillis();
+}
@@ -0,0 +1,42 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * A periodic snapshot of a running generator.
+ * 
+ * @author Ennis Golaszewski
+ */
+@Name("com.golaszewski.hash_mechanic.Progress")
+@Label("Generation Progress")
+@Category("Hash Mechanic")
+@Description("A periodic snapshot of a running generator")
+@StackTrace(false)
+class ProgressEvent extends Event {
+	@Label("Generator")
+	String generator;
+
+	@Label("Digest")
+	String digest;
+
+	@Label("Hashes")
+	long hashes;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Done")
+	@Percentage
+	double fractionDone;
+
+	@Label("Hashes per Second")
+	double hashesPerSecond;
+}
@@ -0,0 +1,90 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics of a run while it is in progress. The metrics are
+ * registered as a JMX MBean, and a daemon thread prints a progress line and
+ * emits a flight recorder event every period. Closing the reporter prints a
+ * final line and unregisters the MBean.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class ProgressReporter implements Closeable {
+	/**
+	 * The default time between progress lines, in seconds.
+	 */
+	public static final long DEFAULT_PERIOD = 10;
+
+	/**
+	 * The JMX domain the metrics are registered under.
+	 */
+	public static final String DOMAIN = "com.golaszewski.hash_mechanic";
+
+	private final GenerationMetrics metrics;
+	private final String name;
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	private final ObjectName objectName;
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * @param metrics
+	 *            - the metrics of the run.
+	 * @param name
+	 *            - names the run in JMX, such as its output file.
+	 * @param period
+	 *            - the seconds between progress lines.
+	 */
+	public ProgressReporter(GenerationMetrics metrics, String name, long period) {
+		this.metrics = metrics;
+		this.name = name;
+
+		try {
+			objectName = new ObjectName(DOMAIN + ":type=Generation,name=" + ObjectName.quote(name));
+			server.registerMBean(metrics, objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register metrics for " + name + "!", e);
+		}
+
+		timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "progress-" + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.scheduleAtFixedRate(this::report, period, period, TimeUnit.SECONDS);
+	}
+
+	private void report() {
+		System.out.println(name + ": " + metrics.getProgressLine());
+
+		ProgressEvent event = new ProgressEvent();
+		if (event.shouldCommit()) {
+			event.generator = metrics.getGenerator();
+			event.digest = metrics.getDigest();
+			event.hashes = metrics.getHashes();
+			event.bytes = metrics.getBytes();
+			event.fractionDone = metrics.getFractionDone();
+			event.hashesPerSecond = metrics.getHashesPerSecond();
+			event.commit();
+		}
+	}
+
+	public void close() {
+		timer.shutdownNow();
+		System.out.println(name + ": " + metrics.getProgressLine());
+
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot unregister " + objectName + "!", e);
+		}
+	}
+}
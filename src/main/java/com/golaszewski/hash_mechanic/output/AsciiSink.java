@@ -0,0 +1,101 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A sink that expands every bit of the output into an ASCII '0' or '1', most
+ * significant bit first, as read by the NIST statistical test suite. Each byte
+ * is expanded by looking up its eight characters as one long in a table and
+ * storing them with a single put into a large direct buffer. Full buffers are
+ * handed to another sink, which writes them straight to its channel or
+ * mapping.
+ *
+ * @author Ennis Golaszewski
+ */
+public class AsciiSink implements HashSink {
+	/**
+	 * The default buffer size in bytes, holding the expansion of 1 MB of
+	 * output.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8 << 20;
+
+	/**
+	 * The eight characters of each byte value, first character in the most
+	 * significant byte.
+	 */
+	private static final long[] EXPANSION = new long[256];
+
+	static {
+		for (int value = 0; value < 256; value++) {
+			long characters = 0;
+			for (int bit = Byte.SIZE - 1; bit >= 0; bit--) {
+				characters = (characters << Byte.SIZE) | ((value >>> bit) & 1) + '0';
+			}
+			EXPANSION[value] = characters;
+		}
+	}
+
+	private final HashSink sink;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Creates a sink expanding into a buffer of the default size.
+	 *
+	 * @param sink
+	 *            - receives the characters. It is closed along with this sink.
+	 */
+	public AsciiSink(HashSink sink) {
+		this(sink, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a sink expanding into a buffer of the given size.
+	 *
+	 * @param sink
+	 *            - receives the characters. It is closed along with this sink.
+	 * @param bufferSize
+	 *            - the number of characters to collect before each write,
+	 *            rounded down to a multiple of eight.
+	 */
+	public AsciiSink(HashSink sink, int bufferSize) {
+		this.sink = sink;
+		this.buffer = ByteBuffer.allocateDirect(Math.max(Long.BYTES, bufferSize / Long.BYTES * Long.BYTES));
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		int end = offset + length;
+
+		while (offset < end) {
+			int count = Math.min(end - offset, buffer.remaining() / Long.BYTES);
+			for (int i = offset; i < offset + count; i++) {
+				buffer.putLong(EXPANSION[bytes[i] & 0xFF]);
+			}
+			offset += count;
+
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+		}
+	}
+
+	@Override
+	public void sync() throws IOException {
+		flush();
+		sink.sync();
+	}
+
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			sink.close();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		sink.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,237 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A sink that writes to a channel from its own thread, so hashing continues
+ * while earlier output is written. The sink owns a fixed set of direct
+ * buffers. The generator fills one while the writer thread empties the others
+ * into the channel. When every other buffer is still waiting to be written,
+ * the generator blocks until one is free, so memory stays bounded however
+ * slow the disk is.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class AsyncChannelSink implements HashSink {
+	/**
+	 * The default number of buffers.
+	 */
+	public static final int DEFAULT_BUFFER_COUNT = 4;
+
+	/**
+	 * The default buffer size in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Handed to the writer thread to stop it.
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final WritableByteChannel channel;
+	private final WriteListener listener;
+	private final int bufferCount;
+	private final BlockingQueue<ByteBuffer> free;
+	private final BlockingQueue<ByteBuffer> full;
+	private final Thread writer;
+	private volatile IOException failure;
+	private ByteBuffer current;
+
+	/**
+	 * Creates a sink writing to a channel through the default buffers.
+	 * 
+	 * @param channel
+	 *            - the channel to write to. It is closed along with the sink.
+	 */
+	public AsyncChannelSink(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_SIZE, WriteListener.NONE);
+	}
+
+	/**
+	 * Creates a sink writing to a channel through the given buffers, timing
+	 * every buffer it writes.
+	 * 
+	 * @param channel
+	 *            - the channel to write to. It is closed along with the sink.
+	 * @param bufferCount
+	 *            - the number of buffers, at least two.
+	 * @param bufferSize
+	 *            - the size of each buffer in bytes.
+	 * @param listener
+	 *            - told the size and latency of each buffer written. It is
+	 *            called from the writer thread.
+	 */
+	public AsyncChannelSink(WritableByteChannel channel, int bufferCount, int bufferSize, WriteListener listener) {
+		if (bufferCount < 2) {
+			throw new IllegalArgumentException("At least two buffers are needed to overlap writes!");
+		}
+
+		this.channel = channel;
+		this.listener = listener;
+		this.bufferCount = bufferCount;
+		this.free = new ArrayBlockingQueue<>(bufferCount);
+		this.full = new ArrayBlockingQueue<>(bufferCount + 1);
+
+		for (int i = 1; i < bufferCount; i++) {
+			free.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		this.current = ByteBuffer.allocateDirect(bufferSize);
+
+		this.writer = new Thread(this::drainQueue, "async-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			int count = Math.min(length, current.remaining());
+			current.put(bytes, offset, count);
+			offset += count;
+			length -= count;
+
+			if (!current.hasRemaining()) {
+				handOff();
+			}
+		}
+	}
+
+	@Override
+	public void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = Math.min(buffer.remaining(), current.remaining());
+			ByteBuffer part = buffer.duplicate();
+			part.limit(part.position() + count);
+			current.put(part);
+			buffer.position(buffer.position() + count);
+
+			if (!current.hasRemaining()) {
+				handOff();
+			}
+		}
+	}
+
+	/**
+	 * Waits for every filled buffer to be written and, when writing to a file,
+	 * forces the file to storage.
+	 */
+	@Override
+	public void sync() throws IOException {
+		if (current.position() > 0) {
+			handOff();
+		}
+		awaitWrites();
+
+		if (channel instanceof FileChannel) {
+			((FileChannel) channel).force(false);
+		}
+	}
+
+	public void close() throws IOException {
+		try {
+			if (failure == null && current.position() > 0) {
+				handOff();
+			}
+			awaitWrites();
+		} finally {
+			try {
+				full.add(END);
+				joinWriter();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Queues the current buffer for writing and takes a free one, waiting
+	 * for the writer thread if none is free.
+	 */
+	private void handOff() throws IOException {
+		checkFailure();
+		current.flip();
+
+		try {
+			full.put(current);
+			current = free.take();
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		}
+	}
+
+	/**
+	 * Waits until every buffer but the current one is free again.
+	 */
+	private void awaitWrites() throws IOException {
+		List<ByteBuffer> idle = new ArrayList<>(bufferCount - 1);
+
+		try {
+			while (idle.size() < bufferCount - 1) {
+				idle.add(free.take());
+			}
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		} finally {
+			free.addAll(idle);
+		}
+
+		checkFailure();
+	}
+
+	private void joinWriter() throws IOException {
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("Writing in the background failed!", failure);
+		}
+	}
+
+	/**
+	 * Runs on the writer thread. After a failed write the remaining buffers
+	 * are discarded, so the generator never waits on a writer that has given
+	 * up; the failure is thrown from its next hand off.
+	 */
+	private void drainQueue() {
+		try {
+			for (ByteBuffer buffer = full.take(); buffer != END; buffer = full.take()) {
+				if (failure == null) {
+					try {
+						long start = System.nanoTime();
+						int bytes = buffer.remaining();
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+						listener.written(bytes, System.nanoTime() - start);
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+
+				buffer.clear();
+				free.add(buffer);
+			}
+		} catch (InterruptedException e) {
+			failure = interrupted(e);
+		}
+	}
+
+	private static InterruptedIOException interrupted(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		InterruptedIOException exception = new InterruptedIOException("Interrupted while writing!");
+		exception.initCause(e);
+		return exception;
+	}
+}
@@ -0,0 +1,139 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A sink that collects hash outputs into a fixed-size chunk and hands each full
+ * chunk to a channel. Only one chunk is ever held in memory, regardless of the
+ * size of the dataset.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class ChannelSink implements HashSink {
+	/**
+	 * The default chunk size in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer chunk;
+	private final WriteListener listener;
+
+	/**
+	 * Creates a sink writing to a channel in chunks of the default size.
+	 * 
+	 * @param channel
+	 *            - the channel to write to. It is closed along with the sink.
+	 */
+	public ChannelSink(WritableByteChannel channel) {
+		this(channel, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a sink writing to a channel in chunks of the given size.
+	 * 
+	 * @param channel
+	 *            - the channel to write to. It is closed along with the sink.
+	 * @param chunkSize
+	 *            - the number of bytes to collect before each write.
+	 */
+	public ChannelSink(WritableByteChannel channel, int chunkSize) {
+		this(channel, chunkSize, WriteListener.NONE);
+	}
+
+	/**
+	 * Creates a sink writing to a channel in chunks of the given size, timing
+	 * every chunk it writes.
+	 * 
+	 * @param channel
+	 *            - the channel to write to. It is closed along with the sink.
+	 * @param chunkSize
+	 *            - the number of bytes to collect before each write.
+	 * @param listener
+	 *            - told the size and latency of each chunk written.
+	 */
+	public ChannelSink(WritableByteChannel channel, int chunkSize, WriteListener listener) {
+		this.channel = channel;
+		this.chunk = ByteBuffer.allocateDirect(chunkSize);
+		this.listener = listener;
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			int count = Math.min(length, chunk.remaining());
+			chunk.put(bytes, offset, count);
+			offset += count;
+			length -= count;
+
+			if (!chunk.hasRemaining()) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Copies the buffer into the current chunk. A buffer of at least a chunk
+	 * arriving at an empty chunk is written straight to the channel instead.
+	 */
+	@Override
+	public void write(ByteBuffer buffer) throws IOException {
+		if (chunk.position() == 0 && buffer.remaining() >= chunk.capacity()) {
+			long start = System.nanoTime();
+			int bytes = buffer.remaining();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			listener.written(bytes, System.nanoTime() - start);
+			return;
+		}
+
+		while (buffer.hasRemaining()) {
+			int count = Math.min(buffer.remaining(), chunk.remaining());
+			ByteBuffer part = buffer.duplicate();
+			part.limit(part.position() + count);
+			chunk.put(part);
+			buffer.position(buffer.position() + count);
+
+			if (!chunk.hasRemaining()) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes out whatever is held in the current chunk.
+	 */
+	public void flush() throws IOException {
+		long start = System.nanoTime();
+		int bytes = chunk.flip().remaining();
+		while (chunk.hasRemaining()) {
+			channel.write(chunk);
+		}
+		chunk.clear();
+		listener.written(bytes, System.nanoTime() - start);
+	}
+
+	/**
+	 * Flushes the current chunk and, when writing to a file, forces the file
+	 * to storage.
+	 */
+	@Override
+	public void sync() throws IOException {
+		flush();
+
+		if (channel instanceof FileChannel) {
+			((FileChannel) channel).force(false);
+		}
+	}
+
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
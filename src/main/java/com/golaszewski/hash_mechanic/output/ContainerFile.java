@@ -0,0 +1,93 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a dataset written in the {@link OutputFormat#CONTAINER} format. Record
+ * i starts at the header length plus i times the digest size, so any record is
+ * read with one positioned read.
+ *
+ * @author Ennis Golaszewski
+ */
+public class ContainerFile implements Closeable {
+	private final File file;
+	private final FileChannel channel;
+	private final DatasetHeader header;
+	private final long dataOffset;
+
+	/**
+	 * Opens a container file and reads its header.
+	 *
+	 * @param file
+	 *            - the file to read.
+	 * @throws IOException
+	 *             if the file is not a complete container.
+	 */
+	public ContainerFile(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			byte[] prefix = new byte[8];
+			readFully(ByteBuffer.wrap(prefix), 0);
+			byte[] bytes = new byte[DatasetHeader.readLength(prefix)];
+			readFully(ByteBuffer.wrap(bytes), 0);
+
+			this.header = DatasetHeader.fromBytes(bytes);
+			this.dataOffset = bytes.length;
+
+			if (channel.size() != dataOffset + header.getDataLength()) {
+				throw new IOException(file + " holds " + channel.size() + " bytes but its header describes "
+						+ (dataOffset + header.getDataLength()) + "!");
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public DatasetHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * Reads one hash record.
+	 *
+	 * @param record
+	 *            - the index of the record.
+	 * @param out
+	 *            - the array to read the record into.
+	 * @param outOff
+	 *            - the offset into the array.
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no such record.
+	 */
+	public void read(long record, byte[] out, int outOff) throws IOException {
+		if (record < 0 || record >= header.getRecords()) {
+			throw new IndexOutOfBoundsException("Record " + record + " of " + header.getRecords() + "!");
+		}
+
+		readFully(ByteBuffer.wrap(out, outOff, header.getDigestSize()), dataOffset + record
+				* header.getDigestSize());
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if (count < 0) {
+				throw new EOFException("Unexpected end of " + file + "!");
+			}
+			position += count;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Describes a dataset: the digest and generator that produced it, and the
+ * size and number of its hash records. The {@link OutputFormat#CONTAINER}
+ * format stores it at the start of the file, padded so that the records
+ * start on a {@link #ALIGNMENT} byte boundary.
+ *
+ * @author Ennis Golaszewski
+ */
+public class DatasetHeader {
+	/**
+	 * The boundary the first record is aligned to.
+	 */
+	public static final int ALIGNMENT = 64;
+
+	private static final int MAGIC = 0x484d4331;
+
+	private final String algorithm;
+	private final String generator;
+	private final double rounds;
+	private final int digestSize;
+	private final long records;
+
+	/**
+	 * @param algorithm
+	 *            - the name of the digest.
+	 * @param generator
+	 *            - the name of the generator.
+	 * @param rounds
+	 *            - the round count of the digest, or NaN if it is not known.
+	 * @param digestSize
+	 *            - the size of each hash record in bytes.
+	 * @param records
+	 *            - the number of hash records.
+	 */
+	public DatasetHeader(String algorithm, String generator, double rounds, int digestSize, long records) {
+		this.algorithm = algorithm;
+		this.generator = generator;
+		this.rounds = rounds;
+		this.digestSize = digestSize;
+		this.records = records;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public String getGenerator() {
+		return generator;
+	}
+
+	public double getRounds() {
+		return rounds;
+	}
+
+	public int getDigestSize() {
+		return digestSize;
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return the number of bytes of hash records.
+	 */
+	public long getDataLength() {
+		return records * digestSize;
+	}
+
+	/**
+	 * @return the padded header, as stored in a container file.
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(0);
+			out.writeUTF(algorithm);
+			out.writeUTF(generator);
+			out.writeDouble(rounds);
+			out.writeInt(digestSize);
+			out.writeLong(records);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		int length = (bytes.size() + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+		byte[] header = new byte[length];
+		System.arraycopy(bytes.toByteArray(), 0, header, 0, bytes.size());
+
+		// The second word holds the padded length, which is where the first
+		// record starts.
+		header[4] = (byte) (length >>> 24);
+		header[5] = (byte) (length >>> 16);
+		header[6] = (byte) (length >>> 8);
+		header[7] = (byte) length;
+		return header;
+	}
+
+	/**
+	 * Reads the length of a header from its first eight bytes.
+	 *
+	 * @param prefix
+	 *            - at least the first eight bytes of a container file.
+	 * @return the padded length of the header.
+	 * @throws IOException
+	 *             if the bytes do not start a container file.
+	 */
+	public static int readLength(byte[] prefix) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(prefix))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a dataset container!");
+			}
+			return in.readInt();
+		}
+	}
+
+	/**
+	 * Parses a header stored by {@link #toBytes()}.
+	 *
+	 * @param header
+	 *            - the padded header.
+	 * @return the header.
+	 * @throws IOException
+	 *             if the bytes are not a header.
+	 */
+	public static DatasetHeader fromBytes(byte[] header) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(header))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a dataset container!");
+			}
+			in.readInt();
+			return new DatasetHeader(in.readUTF(), in.readUTF(), in.readDouble(), in.readInt(), in.readLong());
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the hash outputs produced by a generator, in order. Closing the
+ * sink flushes anything still buffered.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface HashSink extends Closeable {
+	/**
+	 * Appends bytes to the output.
+	 * 
+	 * @param bytes
+	 *            - the array holding the bytes. This input is not modified.
+	 * @param offset
+	 *            - the offset into the array.
+	 * @param length
+	 *            - the number of bytes to append.
+	 */
+	void write(byte[] bytes, int offset, int length) throws IOException;
+
+	/**
+	 * Appends the remaining bytes of a buffer to the output. Sinks that write
+	 * to a channel or a mapping override this to take direct buffers without
+	 * copying them to the heap first.
+	 * 
+	 * @param buffer
+	 *            - the bytes from its position to its limit. On return its
+	 *            position is at its limit.
+	 */
+	default void write(ByteBuffer buffer) throws IOException {
+		if (buffer.hasArray()) {
+			write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+			return;
+		}
+
+		byte[] bytes = new byte[Math.min(buffer.remaining(), 1 << 16)];
+		while (buffer.hasRemaining()) {
+			int count = Math.min(bytes.length, buffer.remaining());
+			buffer.get(bytes, 0, count);
+			write(bytes, 0, count);
+		}
+	}
+
+	/**
+	 * Writes out anything buffered and forces it to storage, so the bytes
+	 * written so far survive a crash. Sinks that do not write to storage do
+	 * nothing.
+	 */
+	default void sync() throws IOException {
+	}
+}
@@ -0,0 +1,151 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A sink that pre-sizes its file to the known output length and maps it into
+ * memory. Hash outputs are copied straight into the mapped region, so they land
+ * in the OS page cache as they are produced and are never staged in a separate
+ * write buffer. A single mapping is limited to 2 GB, so the file is mapped as a
+ * chain of segments, each mapped when writing reaches it.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class MappedFileSink implements HashSink {
+	/**
+	 * The default segment size in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	private final File file;
+	private final long length;
+	private final int segmentSize;
+	private final RandomAccessFile raf;
+	private MappedByteBuffer segment;
+	private long segmentStart;
+
+	/**
+	 * Creates the file at its final size and maps it for writing.
+	 * 
+	 * @param file
+	 *            - the file to write. Any existing contents are replaced.
+	 * @param length
+	 *            - the exact number of bytes that will be written.
+	 */
+	public MappedFileSink(File file, long length) throws IOException {
+		this(file, length, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates the file at its final size and maps it for writing in segments
+	 * of the given size.
+	 * 
+	 * @param file
+	 *            - the file to write. Any existing contents are replaced.
+	 * @param length
+	 *            - the exact number of bytes that will be written.
+	 * @param segmentSize
+	 *            - the number of bytes mapped at a time.
+	 */
+	public MappedFileSink(File file, long length, int segmentSize) throws IOException {
+		this(file, length, segmentSize, 0);
+	}
+
+	/**
+	 * Sizes the file to its final size and maps it for writing from an
+	 * offset, keeping the bytes before the offset. This continues a file
+	 * whose first bytes were written by an earlier run.
+	 * 
+	 * @param file
+	 *            - the file to write.
+	 * @param length
+	 *            - the exact number of bytes in the finished file.
+	 * @param segmentSize
+	 *            - the number of bytes mapped at a time.
+	 * @param offset
+	 *            - the number of bytes already written.
+	 */
+	public MappedFileSink(File file, long length, int segmentSize, long offset) throws IOException {
+		this.file = file;
+		this.length = length;
+		this.segmentSize = segmentSize;
+		this.raf = new RandomAccessFile(file, "rw");
+
+		try {
+			raf.setLength(length);
+			segment = map(offset - offset % segmentSize);
+			segment.position((int) (offset - segmentStart));
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > segment.remaining()) {
+			int count = segment.remaining();
+			segment.put(bytes, offset, count);
+			offset += count;
+			length -= count;
+
+			if (segmentStart + segmentSize >= this.length) {
+				throw new IOException("Writing past the end of " + file + "!");
+			}
+			segment = map(segmentStart + segmentSize);
+		}
+
+		segment.put(bytes, offset, length);
+	}
+
+	@Override
+	public void write(ByteBuffer buffer) throws IOException {
+		while (buffer.remaining() > segment.remaining()) {
+			ByteBuffer part = buffer.duplicate();
+			part.limit(part.position() + segment.remaining());
+			buffer.position(part.limit());
+			segment.put(part);
+
+			if (segmentStart + segmentSize >= this.length) {
+				throw new IOException("Writing past the end of " + file + "!");
+			}
+			segment = map(segmentStart + segmentSize);
+		}
+
+		segment.put(buffer);
+	}
+
+	/**
+	 * Forces the current segment and the file to storage. Earlier segments
+	 * are covered by forcing the file.
+	 */
+	@Override
+	public void sync() throws IOException {
+		segment.force();
+		raf.getChannel().force(false);
+	}
+
+	/**
+	 * Releases the file. The mappings stay valid until they are garbage
+	 * collected, but their pages are already owned by the OS.
+	 */
+	public void close() throws IOException {
+		raf.close();
+
+		long written = segmentStart + segment.position();
+		if (written != length) {
+			throw new IOException("Expected " + length + " bytes for " + file + " but got " + written + "!");
+		}
+	}
+
+	private MappedByteBuffer map(long start) throws IOException {
+		FileChannel channel = raf.getChannel();
+		segmentStart = start;
+		return channel.map(MapMode.READ_WRITE, start, Math.min(segmentSize, length - start));
+	}
+}
@@ -0,0 +1,136 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory sink addressed by 64-bit positions, for datasets that outgrow a
+ * byte array. Output is held off the heap in a chain of direct buffers, each
+ * allocated when writing reaches it, so its size is bounded by the direct
+ * memory limit (-XX:MaxDirectMemorySize) rather than by 2 GB. Closing the arena
+ * releases its buffers to the garbage collector.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class OffHeapArena implements HashSink {
+	/**
+	 * The default segment size in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	private final int segmentSize;
+	private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+	private long size;
+
+	public OffHeapArena() {
+		this(DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param segmentSize
+	 *            - the number of bytes allocated at a time.
+	 */
+	public OffHeapArena(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	public void write(byte[] bytes, int offset, int length) {
+		while (length > 0) {
+			if (size == segments.size() * (long) segmentSize) {
+				segments.add(ByteBuffer.allocateDirect(segmentSize));
+			}
+
+			int within = (int) (size % segmentSize);
+
+			ByteBuffer segment = segments.get(segments.size() - 1);
+			int count = Math.min(length, segmentSize - within);
+			segment.position(within);
+			segment.put(bytes, offset, count);
+
+			offset += count;
+			length -= count;
+			size += count;
+		}
+	}
+
+	/**
+	 * @return the number of bytes written so far.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Reads one byte.
+	 * 
+	 * @param position
+	 *            - the position of the byte, below {@link #size()}.
+	 */
+	public byte get(long position) {
+		checkRange(position, 1);
+		return segments.get((int) (position / segmentSize)).get((int) (position % segmentSize));
+	}
+
+	/**
+	 * Copies a range of bytes into an array.
+	 * 
+	 * @param position
+	 *            - the position of the first byte.
+	 * @param out
+	 *            - the array to copy into.
+	 * @param outOff
+	 *            - the offset into the array.
+	 * @param length
+	 *            - the number of bytes to copy.
+	 */
+	public void read(long position, byte[] out, int outOff, int length) {
+		checkRange(position, length);
+
+		while (length > 0) {
+			ByteBuffer segment = segments.get((int) (position / segmentSize)).duplicate();
+			int within = (int) (position % segmentSize);
+			int count = Math.min(length, segmentSize - within);
+
+			segment.position(within);
+			segment.get(out, outOff, count);
+
+			position += count;
+			outOff += count;
+			length -= count;
+		}
+	}
+
+	/**
+	 * Writes the whole contents to a channel. The channel is not closed.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		long remaining = size;
+
+		for (ByteBuffer segment : segments) {
+			ByteBuffer view = segment.duplicate();
+			view.position(0).limit((int) Math.min(segmentSize, remaining));
+			while (view.hasRemaining()) {
+				channel.write(view);
+			}
+			remaining -= view.limit();
+		}
+	}
+
+	/**
+	 * Drops the buffers. The arena is empty afterwards.
+	 */
+	public void close() {
+		segments.clear();
+		size = 0;
+	}
+
+	private void checkRange(long position, int length) {
+		if (position < 0 || length < 0 || position + length > size) {
+			throw new IndexOutOfBoundsException("Cannot read " + length + " bytes at " + position + " of " + size
+					+ "!");
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Selects the layout of a dataset file. Every format takes the hash records
+ * in order and can continue a file from a checkpoint.
+ *
+ * @author Ennis Golaszewski
+ */
+public enum OutputFormat {
+	/**
+	 * The hash records back to back, with nothing else.
+	 */
+	RAW(".dat") {
+		@Override
+		public long getFileOffset(DatasetHeader header, long offset) {
+			return offset;
+		}
+
+		@Override
+		HashSink wrap(HashSink sink, DatasetHeader header, long offset) {
+			return sink;
+		}
+	},
+
+	/**
+	 * A {@link DatasetHeader} followed by the hash records. The records have a
+	 * fixed stride, so {@link ContainerFile} finds any record by its index
+	 * without reading the ones before it.
+	 */
+	CONTAINER(".hmc") {
+		@Override
+		public long getFileOffset(DatasetHeader header, long offset) {
+			return header.toBytes().length + offset;
+		}
+
+		@Override
+		HashSink wrap(HashSink sink, DatasetHeader header, long offset) throws IOException {
+			if (offset == 0) {
+				byte[] bytes = header.toBytes();
+				sink.write(bytes, 0, bytes.length);
+			}
+			return sink;
+		}
+	},
+
+	/**
+	 * Every bit as an ASCII '0' or '1', as read by the NIST statistical test
+	 * suite.
+	 */
+	ASCII(".txt") {
+		@Override
+		public long getFileOffset(DatasetHeader header, long offset) {
+			return offset * Byte.SIZE;
+		}
+
+		@Override
+		HashSink wrap(HashSink sink, DatasetHeader header, long offset) {
+			return new AsciiSink(sink);
+		}
+
+		@Override
+		public long getBufferLength() {
+			return AsciiSink.DEFAULT_BUFFER_SIZE;
+		}
+	};
+
+	private final String extension;
+
+	private OutputFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @return the file extension, including the dot.
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Computes where the file holds a position in the output.
+	 *
+	 * @param header
+	 *            - describes the dataset.
+	 * @param offset
+	 *            - a number of bytes of hash records.
+	 * @return the length of the file holding them.
+	 */
+	public abstract long getFileOffset(DatasetHeader header, long offset);
+
+	/**
+	 * @return the exact size of a dataset file in bytes.
+	 */
+	public long getFileLength(DatasetHeader header) {
+		return getFileOffset(header, header.getDataLength());
+	}
+
+	/**
+	 * @return the memory the format holds in buffers while writing.
+	 */
+	public long getBufferLength() {
+		return 0;
+	}
+
+	/**
+	 * Opens a sink that writes the hash records of a dataset to a file in this
+	 * format.
+	 *
+	 * @param file
+	 *            - the file to write.
+	 * @param mode
+	 *            - how the file is written.
+	 * @param header
+	 *            - describes the dataset.
+	 * @param offset
+	 *            - the number of bytes of hash records already in the file,
+	 *            written by an earlier run.
+	 * @param listener
+	 *            - told the size and latency of each write to the file.
+	 * @return a sink taking the hash records after the offset.
+	 * @throws IOException
+	 *             if the file is shorter than the offset.
+	 */
+	public HashSink open(File file, WriterMode mode, DatasetHeader header, long offset, WriteListener listener)
+			throws IOException {
+		long fileOffset = getFileOffset(header, offset);
+		if (offset > 0 && file.length() < fileOffset) {
+			throw new IOException("Cannot continue " + file + " from byte " + fileOffset + ", it only holds "
+					+ file.length() + "!");
+		}
+
+		// A new file is written from its start, header included.
+		HashSink sink = mode.open(file, getFileLength(header), offset == 0 ? 0 : fileOffset, listener);
+
+		try {
+			return wrap(sink, header, offset);
+		} catch (IOException e) {
+			try {
+				sink.close();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Wraps a sink positioned at the start of the file when the offset is
+	 * zero, and at the file offset of the given output offset otherwise.
+	 */
+	abstract HashSink wrap(HashSink sink, DatasetHeader header, long offset) throws IOException;
+}
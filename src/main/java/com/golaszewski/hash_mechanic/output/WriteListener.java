@@ -0,0 +1,24 @@
+package com.golaszewski.hash_mechanic.output;
+
+/**
+ * Observes the writes a sink makes to its underlying file.
+ * 
+ * @author Ennis Golaszewski
+ */
+public interface WriteListener {
+	/**
+	 * A listener that ignores every write.
+	 */
+	public static final WriteListener NONE = (bytes, nanos) -> {
+	};
+
+	/**
+	 * Called after each write to the underlying file.
+	 * 
+	 * @param bytes
+	 *            - the number of bytes written.
+	 * @param nanos
+	 *            - how long the write took.
+	 */
+	public void written(long bytes, long nanos);
+}
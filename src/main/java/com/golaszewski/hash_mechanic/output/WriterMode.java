@@ -0,0 +1,163 @@
+package com.golaszewski.hash_mechanic.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Selects how a dataset is written to its file.
+ * 
+ * @author Ennis Golaszewski
+ */
+public enum WriterMode {
+	/**
+	 * Streams the output through a chunked channel writer.
+	 */
+	STREAM {
+		@Override
+		public HashSink open(File file, long length, long offset, WriteListener listener) throws IOException {
+			return new ChannelSink(openChannel(file, offset), ChannelSink.DEFAULT_CHUNK_SIZE, listener);
+		}
+
+		@Override
+		public long getBufferLength(long length) {
+			return ChannelSink.DEFAULT_CHUNK_SIZE;
+		}
+	},
+
+	/**
+	 * Streams the output through a writer thread, which empties filled
+	 * buffers into the file while the generator fills the next. Hashing
+	 * only waits on the disk when every buffer is full.
+	 */
+	ASYNC {
+		@Override
+		public HashSink open(File file, long length, long offset, WriteListener listener) throws IOException {
+			return new AsyncChannelSink(openChannel(file, offset), AsyncChannelSink.DEFAULT_BUFFER_COUNT,
+					AsyncChannelSink.DEFAULT_BUFFER_SIZE, listener);
+		}
+
+		@Override
+		public long getBufferLength(long length) {
+			return (long) AsyncChannelSink.DEFAULT_BUFFER_COUNT * AsyncChannelSink.DEFAULT_BUFFER_SIZE;
+		}
+	},
+
+	/**
+	 * Pre-sizes the file and writes into a memory mapping of it. Writes are
+	 * memory copies and are not reported to the listener.
+	 */
+	MAPPED {
+		@Override
+		public HashSink open(File file, long length, long offset, WriteListener listener) throws IOException {
+			return new MappedFileSink(file, length, MappedFileSink.DEFAULT_SEGMENT_SIZE, offset);
+		}
+
+		/**
+		 * One segment of the file is mapped at a time.
+		 */
+		@Override
+		public long getBufferLength(long length) {
+			return Math.min(length, MappedFileSink.DEFAULT_SEGMENT_SIZE);
+		}
+	},
+
+	/**
+	 * Discards the output without creating the file, for runs that only
+	 * analyze it.
+	 */
+	NONE {
+		@Override
+		public HashSink open(File file, long length, long offset, WriteListener listener) {
+			return new HashSink() {
+				public void write(byte[] bytes, int offset, int length) {
+				}
+
+				@Override
+				public void write(ByteBuffer buffer) {
+					buffer.position(buffer.limit());
+				}
+
+				public void close() {
+				}
+			};
+		}
+
+		@Override
+		public long getBufferLength(long length) {
+			return 0;
+		}
+	};
+
+	/**
+	 * Opens a sink for a dataset file.
+	 * 
+	 * @param file
+	 *            - the file to write.
+	 * @param length
+	 *            - the exact number of bytes the generator will produce.
+	 * @return a sink writing to the file.
+	 */
+	public HashSink open(File file, long length) throws IOException {
+		return open(file, length, WriteListener.NONE);
+	}
+
+	/**
+	 * Opens a sink for a dataset file that reports its writes.
+	 * 
+	 * @param file
+	 *            - the file to write.
+	 * @param length
+	 *            - the exact number of bytes the generator will produce.
+	 * @param listener
+	 *            - told the size and latency of each write to the file.
+	 * @return a sink writing to the file.
+	 */
+	public HashSink open(File file, long length, WriteListener listener) throws IOException {
+		return open(file, length, 0, listener);
+	}
+
+	/**
+	 * Opens a sink that continues a dataset file from an offset. The bytes
+	 * before the offset are kept and anything after it is replaced.
+	 * 
+	 * @param file
+	 *            - the file to write.
+	 * @param length
+	 *            - the exact number of bytes in the finished file.
+	 * @param offset
+	 *            - the number of bytes already written by an earlier run.
+	 * @param listener
+	 *            - told the size and latency of each write to the file.
+	 * @return a sink writing to the file from the offset.
+	 */
+	public abstract HashSink open(File file, long length, long offset, WriteListener listener) throws IOException;
+
+	/**
+	 * Estimates the memory a sink holds while writing a file. For a mapping
+	 * this is the mapped segment, resident in the page cache.
+	 * 
+	 * @param length
+	 *            - the exact number of bytes the generator will produce.
+	 * @return the buffer size in bytes.
+	 */
+	public abstract long getBufferLength(long length);
+
+	/**
+	 * Opens a file for writing from an offset, dropping anything after it.
+	 */
+	private static FileChannel openChannel(File file, long offset) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+		try {
+			channel.truncate(offset).position(offset);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return channel;
+	}
+}
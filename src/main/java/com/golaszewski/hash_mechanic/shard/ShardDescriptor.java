@@ -0,0 +1,216 @@
+package com.golaszewski.hash_mechanic.shard;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.bouncycastle.crypto.Digest;
+
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.generator.Checkpoint;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+
+/**
+ * Describes a partial data file holding one shard of a dataset: the dataset it
+ * belongs to, the records it holds, and the size and CRC32C checksum of the
+ * file. It is saved as a properties file beside the partial file, which is all
+ * {@link ShardMerger} needs to check and join the parts.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class ShardDescriptor {
+	/**
+	 * The extension added to the name of the partial file.
+	 */
+	public static final String EXTENSION = ".shard";
+
+	private final File file;
+	private final String generator;
+	private final String algorithm;
+	private final double rounds;
+	private final String fingerprint;
+	private final String format;
+	private final int shardIndex;
+	private final int shardCount;
+	private final long firstRecord;
+	private final long records;
+	private final long totalRecords;
+	private final long length;
+	private final long checksum;
+
+	private ShardDescriptor(File file, Properties properties) throws IOException {
+		this.file = file;
+
+		try {
+			this.generator = require(properties, "generator");
+			this.algorithm = require(properties, "algorithm");
+			this.rounds = Double.parseDouble(require(properties, "rounds"));
+			this.fingerprint = require(properties, "fingerprint");
+			this.format = require(properties, "format");
+			this.shardIndex = Integer.parseInt(require(properties, "shardIndex"));
+			this.shardCount = Integer.parseInt(require(properties, "shardCount"));
+			this.firstRecord = Long.parseLong(require(properties, "firstRecord"));
+			this.records = Long.parseLong(require(properties, "records"));
+			this.totalRecords = Long.parseLong(require(properties, "totalRecords"));
+			this.length = Long.parseLong(require(properties, "length"));
+			this.checksum = Long.parseLong(require(properties, "checksum"), 16);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed shard descriptor for " + file + "!", e);
+		}
+	}
+
+	/**
+	 * Describes a partial data file that has just been written.
+	 * 
+	 * @param generator
+	 *            - the sharded generator that wrote it.
+	 * @param digest
+	 *            - the hash function it was generated from. It is reset.
+	 * @param nRounds
+	 *            - the round count of the digest.
+	 * @param format
+	 *            - the layout of the file.
+	 * @param output
+	 *            - the partial data file.
+	 * @return the descriptor.
+	 */
+	public static ShardDescriptor create(Generator generator, Digest digest, double nRounds, OutputFormat format,
+			File output) throws IOException {
+		Shard shard = generator.getShard();
+		long total = generator.getTotalHashCount(digest);
+		Properties properties = new Properties();
+
+		properties.setProperty("generator", generator.getName());
+		properties.setProperty("algorithm", digest.getAlgorithmName());
+		properties.setProperty("rounds", Double.toString(nRounds));
+		properties.setProperty("fingerprint", Checkpoint.fingerprint(digest));
+		properties.setProperty("format", format.name());
+		properties.setProperty("shardIndex", Integer.toString(shard.getIndex()));
+		properties.setProperty("shardCount", Integer.toString(shard.getCount()));
+		properties.setProperty("firstRecord", Long.toString(shard.getFirst(total)));
+		properties.setProperty("records", Long.toString(shard.getRecords(total)));
+		properties.setProperty("totalRecords", Long.toString(total));
+		properties.setProperty("length", Long.toString(output.length()));
+		properties.setProperty("checksum", Long.toHexString(DatasetCache.checksum(output)));
+
+		try (OutputStream out = new FileOutputStream(getFile(output))) {
+			properties.store(out, "hash-mechanic shard of " + generator.getName());
+		}
+
+		return new ShardDescriptor(output, properties);
+	}
+
+	/**
+	 * Reads the descriptor of a partial data file.
+	 * 
+	 * @param descriptor
+	 *            - the descriptor, named after the partial file with
+	 *            {@link #EXTENSION} added.
+	 * @return the descriptor.
+	 */
+	public static ShardDescriptor read(File descriptor) throws IOException {
+		String path = descriptor.getPath();
+		if (!path.endsWith(EXTENSION)) {
+			throw new IOException(descriptor + " is not a shard descriptor!");
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(descriptor)) {
+			properties.load(in);
+		}
+
+		return new ShardDescriptor(new File(path.substring(0, path.length() - EXTENSION.length())), properties);
+	}
+
+	/**
+	 * @return the descriptor file of a partial data file.
+	 */
+	public static File getFile(File output) {
+		return new File(output.getPath() + EXTENSION);
+	}
+
+	/**
+	 * @return true if both parts come from the same dataset, split the same
+	 *         way.
+	 */
+	public boolean isSameDataset(ShardDescriptor other) {
+		return generator.equals(other.generator) && algorithm.equals(other.algorithm)
+				&& Double.compare(rounds, other.rounds) == 0 && fingerprint.equals(other.fingerprint)
+				&& format.equals(other.format) && shardCount == other.shardCount
+				&& totalRecords == other.totalRecords;
+	}
+
+	/**
+	 * Checks that the partial file still has the recorded size and checksum.
+	 * 
+	 * @throws IOException
+	 *             if it does not.
+	 */
+	public void verify() throws IOException {
+		if (file.length() != length) {
+			throw new IOException(file + " holds " + file.length() + " bytes, but its descriptor says " + length
+					+ "!");
+		}
+		if (DatasetCache.checksum(file) != checksum) {
+			throw new IOException(file + " does not match the checksum in its descriptor!");
+		}
+	}
+
+	public File getDataFile() {
+		return file;
+	}
+
+	public String getGenerator() {
+		return generator;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public double getRounds() {
+		return rounds;
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	public int getShardIndex() {
+		return shardIndex;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	public long getFirstRecord() {
+		return firstRecord;
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	public long getTotalRecords() {
+		return totalRecords;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	private static String require(Properties properties, String key) throws IOException {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			throw new IOException("Shard descriptor is missing " + key + "!");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,202 @@
+package com.golaszewski.hash_mechanic.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.analysis.AvalancheMatrix;
+import com.golaszewski.hash_mechanic.analysis.StreamStatistics;
+import com.golaszewski.hash_mechanic.generator.Shard;
+
+/**
+ * Joins the partial data files of a sharded dataset into the file a single
+ * run would have written. The parts are checked before anything is written:
+ * they must all come from the same dataset, every shard must be present once,
+ * their record ranges must follow on from each other and cover the dataset,
+ * and each file must match the size and checksum in its descriptor. Analyses
+ * saved beside every part are combined, in shard order, into the reports of
+ * the merged file.
+ * 
+ * @author Ennis Golaszewski
+ */
+public class ShardMerger {
+	public static final String USAGE = "Usage: ShardMerger OUTPUT DESCRIPTOR...\n"
+			+ "  Joins the partial data files named by the .shard descriptors into OUTPUT.\n";
+
+	/**
+	 * Merges the parts named on the command line.
+	 * 
+	 * @param args
+	 *            - the output file followed by the shard descriptors.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.print(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		List<File> descriptors = new ArrayList<File>();
+		for (int i = 1; i < args.length; i++) {
+			descriptors.add(new File(args[i]));
+		}
+
+		try {
+			merge(new File(args[0]), descriptors);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks the parts of a dataset and joins them into one file. The output
+	 * is written to a temporary file and only takes its name once it is
+	 * complete.
+	 * 
+	 * @param output
+	 *            - the merged data file.
+	 * @param descriptors
+	 *            - the descriptors of the parts, in any order.
+	 * @throws IOException
+	 *             if the parts do not make up a whole dataset.
+	 */
+	public static void merge(File output, List<File> descriptors) throws IOException {
+		List<ShardDescriptor> parts = new ArrayList<ShardDescriptor>();
+		for (File descriptor : descriptors) {
+			parts.add(ShardDescriptor.read(descriptor));
+		}
+
+		parts.sort(Comparator.comparingInt(ShardDescriptor::getShardIndex));
+		check(parts);
+
+		for (ShardDescriptor part : parts) {
+			part.verify();
+		}
+
+		List<File> accumulators = findAnalyses(parts, Analysis.ACCUMULATOR_EXTENSION);
+		List<File> matrices = findAnalyses(parts, Analysis.AVALANCHE_EXTENSION);
+
+		File temp = new File(output.getPath() + ".tmp");
+
+		try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (ShardDescriptor part : parts) {
+				try (FileChannel in = FileChannel.open(part.getDataFile().toPath(), StandardOpenOption.READ)) {
+					for (long position = 0; position < part.getLength();) {
+						position += in.transferTo(position, part.getLength() - position, out);
+					}
+				}
+			}
+			out.force(true);
+		}
+
+		Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		System.out.println("Merged " + parts.size() + " shards into " + output + ".");
+
+		if (accumulators != null) {
+			StreamStatistics statistics = StreamStatistics.read(accumulators.get(0));
+			for (int i = 1; i < accumulators.size(); i++) {
+				statistics.merge(StreamStatistics.read(accumulators.get(i)));
+			}
+
+			String report = statistics.getReport();
+			System.out.print(output.getPath() + ":" + System.lineSeparator() + report);
+			Files.write(new File(output.getPath() + Analysis.STATISTICS_EXTENSION).toPath(), report.getBytes(
+					StandardCharsets.UTF_8));
+		}
+		if (matrices != null) {
+			AvalancheMatrix matrix = AvalancheMatrix.read(matrices.get(0));
+			for (int i = 1; i < matrices.size(); i++) {
+				matrix.merge(AvalancheMatrix.read(matrices.get(i)));
+			}
+
+			System.out.println(output.getPath() + ": " + matrix.getSummary());
+			matrix.write(new File(output.getPath() + Analysis.AVALANCHE_EXTENSION));
+		}
+	}
+
+	/**
+	 * Finds the files an analysis saved beside the data file of each part.
+	 * 
+	 * @param parts
+	 *            - the sorted parts.
+	 * @param extension
+	 *            - the extension of the saved analysis.
+	 * @return the files in shard order, or null if no part was analyzed.
+	 * @throws IOException
+	 *             if only some of the parts were analyzed.
+	 */
+	static List<File> findAnalyses(List<ShardDescriptor> parts, String extension) throws IOException {
+		List<File> files = new ArrayList<File>();
+
+		for (ShardDescriptor part : parts) {
+			File file = new File(part.getDataFile().getPath() + extension);
+			if (file.exists()) {
+				files.add(file);
+			}
+		}
+
+		if (files.isEmpty()) {
+			return null;
+		}
+		if (files.size() != parts.size()) {
+			throw new IOException("Only " + files.size() + " of " + parts.size() + " shards have a " + extension
+					+ " file!");
+		}
+
+		return files;
+	}
+
+	/**
+	 * Checks that sorted parts make up every record of one dataset exactly
+	 * once.
+	 */
+	static void check(List<ShardDescriptor> parts) throws IOException {
+		if (parts.isEmpty()) {
+			throw new IOException("No shards to merge!");
+		}
+
+		ShardDescriptor first = parts.get(0);
+		int count = first.getShardCount();
+		long total = first.getTotalRecords();
+		long next = 0;
+
+		if (parts.size() != count) {
+			throw new IOException("The dataset has " + count + " shards, but " + parts.size() + " were given!");
+		}
+
+		for (int i = 0; i < count; i++) {
+			ShardDescriptor part = parts.get(i);
+			Shard shard = new Shard(i, count);
+
+			if (!part.isSameDataset(first)) {
+				throw new IOException(part.getDataFile() + " belongs to a different dataset than "
+						+ first.getDataFile() + "!");
+			}
+			if (part.getShardIndex() != i) {
+				throw new IOException("Shard " + i + " of " + count + " is missing!");
+			}
+			if (part.getFirstRecord() != next || part.getFirstRecord() != shard.getFirst(total)
+					|| part.getRecords() != shard.getRecords(total)) {
+				throw new IOException(part.getDataFile() + " holds records " + part.getFirstRecord() + " to "
+						+ (part.getFirstRecord() + part.getRecords()) + ", not the range of shard " + i + "!");
+			}
+
+			next += part.getRecords();
+		}
+
+		if (next != total) {
+			throw new IOException("The shards hold " + next + " of " + total + " records!");
+		}
+	}
+}
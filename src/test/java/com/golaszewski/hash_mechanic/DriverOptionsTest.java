@@ -0,0 +1,122 @@
+package com.golaszewski.hash_mechanic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class DriverOptionsTest {
+
+	@Test
+	public void defaultsMatchOriginalSweep() {
+		DriverOptions options = DriverOptions.parse(new String[0]);
+		List<Job> jobs = Driver.plan(options);
+
+		assertEquals(Arrays.asList(0.5, 1.0, 1.5, 2.0, 2.5, 3.0, 3.5, 4.0), options.getRounds());
+		assertEquals(24, jobs.size());
+		assertEquals(new File(".", "MD5.lowdensity.0.5.dat"), jobs.get(0).getOutput());
+		assertEquals(new File(".", "MD5.highdensity.0.5.dat"), jobs.get(1).getOutput());
+		assertEquals(new File(".", "MD5.hashchain.0.5.dat"), jobs.get(2).getOutput());
+		assertEquals(WriterMode.STREAM, jobs.get(0).getSettings().getMode());
+	}
+
+	@Test
+	public void digestsSkipUnsupportedRounds() {
+		DriverOptions options = DriverOptions.parse(new String[] { "--digest", "blake-256,brake-256",
+				"--generator=test", "--rounds", "0.5:3:0.5", "--output", "out", "--mode", "mapped" });
+		List<Job> jobs = Driver.plan(options);
+
+		assertEquals(4, jobs.size());
+		assertEquals(new File("out", "BLAKE-256.test.14.0.dat"), jobs.get(0).getOutput());
+		assertEquals(new File("out", "BRAKE-256.test.1.0.dat"), jobs.get(1).getOutput());
+		assertEquals(new File("out", "BRAKE-256.test.3.0.dat"), jobs.get(3).getOutput());
+		assertEquals(WriterMode.MAPPED, jobs.get(3).getSettings().getMode());
+		assertEquals(256, jobs.get(3).getOutputLength());
+	}
+
+	@Test
+	public void flags() {
+		DriverOptions options = DriverOptions.parse(new String[] { "--dry-run", "--threads=3", "--rounds", "2" });
+
+		assertTrue(options.isDryRun());
+		assertEquals(3, options.getThreads());
+		assertEquals(Arrays.asList(2.0), options.getRounds());
+	}
+
+	@Test
+	public void shardSelectsDensityGenerators() {
+		DriverOptions options = DriverOptions.parse(new String[] { "--shard", "1/4", "--rounds", "2" });
+		List<Job> jobs = Driver.plan(options);
+
+		assertEquals(2, jobs.size());
+		assertEquals(new File(".", "MD5.lowdensity.shard-1-of-4.2.0.dat"), jobs.get(0).getOutput());
+		assertEquals(new File(".", "MD5.highdensity.shard-1-of-4.2.0.dat"), jobs.get(1).getOutput());
+		assertEquals(32832 * 16, jobs.get(0).getOutputLength());
+	}
+
+	@Test
+	public void randomGeneratorOptions() {
+		DriverOptions options = DriverOptions.parse(new String[] { "--generator", "random", "--seed", "-7",
+				"--messages", "1k", "--message-length", "100", "--rounds", "1" });
+		List<Job> jobs = Driver.plan(options);
+
+		assertEquals(1, jobs.size());
+		assertEquals(new File(".", "MD5.random-100--7.1.0.dat"), jobs.get(0).getOutput());
+		assertEquals(1024 * 16, jobs.get(0).getOutputLength());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void hashChainCannotShard() {
+		DriverOptions.parse(new String[] { "--shard", "0/2", "--generator", "hashchain" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void analysisOnlyCannotShard() {
+		DriverOptions.parse(new String[] { "--shard", "0/2", "--analyze", "--mode", "none" });
+	}
+
+	@Test
+	public void md5RunsQuarterRounds() throws IOException {
+		File directory = Files.createTempDirectory("rounds").toFile();
+		DriverOptions options = DriverOptions.parse(new String[] { "--generator", "test", "--rounds", "0:0.5:0.25",
+				"--output", directory.getPath() });
+		List<Job> jobs = Driver.plan(options);
+		List<byte[]> outputs = new ArrayList<byte[]>();
+
+		for (Job job : jobs) {
+			File output = job.run();
+			outputs.add(Files.readAllBytes(output.toPath()));
+			output.delete();
+		}
+		directory.delete();
+
+		assertEquals(new File(directory, "MD5.test.0.25.dat"), jobs.get(1).getOutput());
+		assertFalse(Arrays.equals(outputs.get(0), outputs.get(1)));
+		assertFalse(Arrays.equals(outputs.get(1), outputs.get(2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void md5RejectsPartialSteps() {
+		DriverOptions.parse(new String[] { "--rounds", "0.1" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownDigest() {
+		DriverOptions.parse(new String[] { "--digest", "SHA-1" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void descendingRounds() {
+		DriverOptions.parse(new String[] { "--rounds", "4:1" });
+	}
+}
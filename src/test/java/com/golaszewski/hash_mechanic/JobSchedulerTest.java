@@ -0,0 +1,150 @@
+package com.golaszewski.hash_mechanic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.KBitDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.TestGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.MappedFileSink;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class JobSchedulerTest {
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private final List<Long> started = Collections.synchronizedList(new ArrayList<Long>());
+	private final List<Long> finished = Collections.synchronizedList(new ArrayList<Long>());
+
+	@Test
+	public void budgetLimitsConcurrency() throws Exception {
+		List<Job> jobs = Arrays.<Job> asList(new StubJob(1, 60), new StubJob(2, 60), new StubJob(3, 60),
+				new StubJob(4, 60));
+
+		new JobScheduler(4, 100).run(jobs);
+		assertEquals(1, maxRunning.get());
+
+		maxRunning.set(0);
+		new JobScheduler(4, 200).run(jobs);
+		assertTrue(maxRunning.get() <= 3);
+	}
+
+	@Test
+	public void costliestFirst() throws Exception {
+		List<Job> jobs = Arrays.<Job> asList(new StubJob(2, 1), new StubJob(5, 1), new StubJob(1, 1),
+				new StubJob(3, 1));
+
+		List<File> files = new JobScheduler(1, 100).run(jobs);
+
+		assertEquals(Arrays.asList(5L, 3L, 2L, 1L), started);
+		assertEquals(jobs.get(0).getOutput(), files.get(0));
+	}
+
+	@Test
+	public void oversizedJobRunsAlone() throws Exception {
+		List<Job> jobs = Arrays.<Job> asList(new StubJob(1, 10), new StubJob(5, 1000), new StubJob(3, 10));
+
+		assertEquals(3, new JobScheduler(3, 100).run(jobs).size());
+		assertEquals(Arrays.asList(5L, -5L), finished.subList(0, 2));
+	}
+
+	@Test
+	public void mappedJobsCountOneSegment() throws Exception {
+		Generator generator = new KBitDensityGenerator((byte) 0xFF, 4);
+		List<Job> jobs = Arrays.<Job> asList(new StubJob(1, generator, WriterMode.MAPPED), new StubJob(2,
+				generator, WriterMode.MAPPED));
+		long length = jobs.get(0).getOutputLength();
+		long memory = jobs.get(0).getBufferLength();
+
+		assertTrue(length > 16L * MappedFileSink.DEFAULT_SEGMENT_SIZE);
+		assertTrue(memory >= MappedFileSink.DEFAULT_SEGMENT_SIZE && memory < 2L * MappedFileSink.DEFAULT_SEGMENT_SIZE);
+
+		new JobScheduler(2, 2 * memory).run(jobs);
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void failureIsReported() throws Exception {
+		new JobScheduler(2, 100).run(Arrays.<Job> asList(new StubJob(1, 1), new StubJob(-1, 1)));
+	}
+
+	@Test
+	public void laterFailuresAreSuppressed() throws Exception {
+		try {
+			new JobScheduler(2, 100).run(Arrays.<Job> asList(new StubJob(-1, 1), new StubJob(-2, 1)));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Stub failure", e.getCause().getMessage());
+			assertEquals(1, e.getCause().getSuppressed().length);
+		}
+	}
+
+	/**
+	 * A job with a fixed cost and buffer size that records when it runs
+	 * instead of writing a file. Starts and ends are logged as the cost and its
+	 * negation. A negative cost makes it fail.
+	 */
+	private class StubJob extends Job {
+		private final long cost;
+		private final long memory;
+
+		StubJob(long cost, long memory) {
+			super(new TestGenerator(), () -> new MD5Wrapper(), cost, new RunSettings(new File("unused")));
+			this.cost = cost;
+			this.memory = memory;
+		}
+
+		/**
+		 * A job whose buffer size is estimated from its generator and mode.
+		 */
+		StubJob(long cost, Generator generator, WriterMode mode) {
+			super(generator, () -> new MD5Wrapper(), cost, new RunSettings(new File("unused"), mode, OutputFormat.RAW,
+					Analysis.NONE, DatasetCache.NONE));
+			this.cost = cost;
+			this.memory = -1;
+		}
+
+		@Override
+		public File run() {
+			started.add(cost);
+			finished.add(cost);
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			finished.add(-cost);
+			running.decrementAndGet();
+			if (cost < 0) {
+				throw new IllegalStateException("Stub failure");
+			}
+			return getOutput();
+		}
+
+		@Override
+		public long getHashCount() {
+			return cost;
+		}
+
+		@Override
+		public long getBufferLength() {
+			return (memory >= 0) ? memory : super.getBufferLength();
+		}
+	}
+}
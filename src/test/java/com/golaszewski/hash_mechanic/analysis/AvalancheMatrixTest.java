@@ -0,0 +1,120 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.generator.DensityGenerator;
+import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class AvalancheMatrixTest {
+
+	@Test
+	public void bitSlicedCountsMatchDirectCount() {
+		// 72 output bits leave a partial second word.
+		int inputBits = 3;
+		int outputBits = 72;
+		Random random = new Random(outputBits);
+		AvalancheMatrix matrix = new AvalancheMatrix(inputBits, outputBits);
+		long[][] expected = new long[inputBits][outputBits];
+		byte[] hash = new byte[outputBits / Byte.SIZE];
+		long[] words = new long[2];
+
+		for (int sample = 0; sample < 200; sample++) {
+			int inputBit = random.nextInt(inputBits);
+			random.nextBytes(hash);
+			AvalancheMatrix.pack(hash, 0, hash.length, words, 0);
+			matrix.add(inputBit, words, 0);
+
+			for (int bit = 0; bit < outputBits; bit++) {
+				expected[inputBit][bit] += (hash[bit / Byte.SIZE] >>> (Byte.SIZE - bit % Byte.SIZE - 1)) & 1;
+			}
+		}
+
+		matrix.flush();
+		for (int inputBit = 0; inputBit < inputBits; inputBit++) {
+			for (int bit = 0; bit < outputBits; bit++) {
+				assertEquals(expected[inputBit][bit], matrix.getCount(inputBit, bit));
+			}
+		}
+	}
+
+	@Test
+	public void densityOutputMatchesDirectCount() throws Exception {
+		MD5Wrapper digest = new MD5Wrapper(1.0);
+		byte[] data = new LowDensityGenerator().generateBytes(digest);
+		int size = digest.getDigestSize();
+		int inputBits = DensityGenerator.getInputBits(digest);
+		AvalancheMatrix serial = analyze(data, size, inputBits, 1);
+		AvalancheMatrix parallel = analyze(data, size, inputBits, 3);
+
+		// Count input bit 5 directly: against the base, and against every
+		// one-bit flip i through the two-bit flip (i, 5).
+		int k = 5;
+		long[] expected = new long[size * Byte.SIZE];
+		count(expected, data, size, 1 + k, 0);
+		for (int i = 0; i < inputBits; i++) {
+			if (i != k) {
+				long pair = 1 + inputBits + DensityGenerator.pairRank(Math.min(i, k), Math.max(i, k), inputBits);
+				count(expected, data, size, (int) pair, 1 + i);
+			}
+		}
+
+		assertEquals(inputBits, serial.getSamples(k));
+		for (int bit = 0; bit < expected.length; bit++) {
+			assertEquals(expected[bit], serial.getCount(k, bit));
+		}
+		for (int i = 0; i < inputBits; i++) {
+			for (int bit = 0; bit < expected.length; bit++) {
+				assertEquals(serial.getCount(i, bit), parallel.getCount(i, bit));
+			}
+		}
+	}
+
+	@Test
+	public void writeAndRead() throws Exception {
+		MD5Wrapper digest = new MD5Wrapper(4.0);
+		byte[] data = new LowDensityGenerator().generateBytes(digest);
+		AvalancheMatrix matrix = analyze(data, digest.getDigestSize(), DensityGenerator.getInputBits(digest), 1);
+		File file = File.createTempFile("avalanche", ".sac");
+
+		try {
+			matrix.write(file);
+			AvalancheMatrix read = AvalancheMatrix.read(file);
+
+			assertEquals(matrix.getSummary(), read.getSummary());
+			assertEquals(matrix.getCount(100, 17), read.getCount(100, 17));
+			assertTrue(Math.abs(read.getMeanProbability() - 0.5) < 0.01);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static AvalancheMatrix analyze(byte[] data, int size, int inputBits, int threads) throws Exception {
+		AvalancheSink sink = new AvalancheSink(WriterMode.NONE.open(null, 0), size, inputBits, threads);
+
+		try (AvalancheSink s = sink) {
+			for (int offset = 0; offset < data.length; offset += 1000) {
+				s.write(data, offset, Math.min(1000, data.length - offset));
+			}
+		}
+
+		return sink.getMatrix();
+	}
+
+	/**
+	 * Adds the bits that differ between two records.
+	 */
+	private static void count(long[] counts, byte[] data, int size, int a, int b) {
+		for (int bit = 0; bit < counts.length; bit++) {
+			int x = data[a * size + bit / Byte.SIZE] ^ data[b * size + bit / Byte.SIZE];
+			counts[bit] += (x >>> (Byte.SIZE - bit % Byte.SIZE - 1)) & 1;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.golaszewski.hash_mechanic.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class StreamStatisticsTest {
+	public static final int RECORD_SIZE = 16;
+
+	@Test
+	public void matchesDirectCount() {
+		byte[] data = data(RECORD_SIZE * 1000);
+		StreamStatistics statistics = new StreamStatistics(RECORD_SIZE);
+
+		// Split a record across calls.
+		statistics.add(data, 0, 7);
+		statistics.add(data, 7, data.length - 7);
+
+		long ones = 0;
+		long runs = 1;
+		long[] bitOnes = new long[RECORD_SIZE * Byte.SIZE];
+		int previous = bit(data, 0);
+
+		for (int i = 0; i < data.length * Byte.SIZE; i++) {
+			int bit = bit(data, i);
+			ones += bit;
+			bitOnes[i % bitOnes.length] += bit;
+			if (bit != previous) {
+				runs++;
+			}
+			previous = bit;
+		}
+
+		assertEquals(ones, statistics.getOnes());
+		assertEquals(runs, statistics.getRuns());
+		for (int bit = 0; bit < bitOnes.length; bit++) {
+			assertEquals(bitOnes[bit] / 1000.0 - 0.5, statistics.getBitBias(bit), 1e-12);
+		}
+		assertEquals(serialCorrelation(data), statistics.getSerialCorrelation(), 1e-12);
+		assertTrue(statistics.getMonobitPValue() > 0.0001);
+		assertTrue(statistics.getByteChiSquarePValue() > 0.0001);
+	}
+
+	@Test
+	public void mergeMatchesWhole() {
+		byte[] data = data(RECORD_SIZE * 1000);
+		StreamStatistics whole = new StreamStatistics(RECORD_SIZE);
+		StreamStatistics merged = new StreamStatistics(RECORD_SIZE);
+		whole.add(data, 0, data.length);
+
+		for (int offset = 0; offset < data.length; offset += RECORD_SIZE * 300) {
+			StreamStatistics part = new StreamStatistics(RECORD_SIZE);
+			part.add(data, offset, Math.min(RECORD_SIZE * 300, data.length - offset));
+			merged.merge(part);
+		}
+
+		assertEquals(whole.getReport(), merged.getReport());
+		assertEquals(whole.getSerialCorrelation(), merged.getSerialCorrelation(), 0);
+	}
+
+	@Test
+	public void writeAndRead() throws Exception {
+		byte[] data = data(RECORD_SIZE * 1000);
+		StreamStatistics statistics = new StreamStatistics(RECORD_SIZE);
+		statistics.add(data, 0, data.length);
+		File file = File.createTempFile("statistics", ".sts");
+
+		try {
+			statistics.write(file);
+			StreamStatistics read = StreamStatistics.read(file);
+
+			assertEquals(statistics.getReport(), read.getReport());
+			assertEquals(statistics.getSerialCorrelation(), read.getSerialCorrelation(), 0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void parallelSinkMatchesSerial() throws Exception {
+		byte[] data = data(StatisticsSink.BLOCK_SIZE * 3 + RECORD_SIZE * 5);
+		StatisticsSink serial = new StatisticsSink(WriterMode.NONE.open(null, 0), RECORD_SIZE);
+		StatisticsSink parallel = new StatisticsSink(WriterMode.NONE.open(null, 0), RECORD_SIZE, 3);
+
+		try (StatisticsSink a = serial; StatisticsSink b = parallel) {
+			for (int offset = 0; offset < data.length; offset += 1000) {
+				a.write(data, offset, Math.min(1000, data.length - offset));
+				b.write(data, offset, Math.min(1000, data.length - offset));
+			}
+		}
+
+		assertEquals(data.length, parallel.getStatistics().getBytes());
+		assertEquals(serial.getStatistics().getReport(), parallel.getStatistics().getReport());
+	}
+
+	@Test
+	public void constantStreamFails() {
+		StreamStatistics statistics = new StreamStatistics(RECORD_SIZE);
+		statistics.add(new byte[RECORD_SIZE * 100], 0, RECORD_SIZE * 100);
+
+		assertEquals(0, statistics.getOnes());
+		assertEquals(1, statistics.getRuns());
+		assertEquals(0, statistics.getMonobitPValue(), 1e-12);
+		assertEquals(-0.5, statistics.getBitBias(statistics.getWorstBit()), 0);
+	}
+
+	private static byte[] data(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static int bit(byte[] bytes, int position) {
+		return (bytes[position / Byte.SIZE] >>> (Byte.SIZE - position % Byte.SIZE - 1)) & 1;
+	}
+
+	/**
+	 * Computes the serial correlation coefficient the way ent does, wrapping
+	 * the last byte to the first.
+	 */
+	private static double serialCorrelation(byte[] bytes) {
+		double sum = 0;
+		double squares = 0;
+		double products = 0;
+
+		for (int i = 0; i < bytes.length; i++) {
+			int u = bytes[i] & 0xff;
+			int v = bytes[(i + 1) % bytes.length] & 0xff;
+			sum += u;
+			squares += u * u;
+			products += u * v;
+		}
+
+		double n = bytes.length;
+		return (n * products - sum * sum) / (n * squares - sum * sum);
+	}
+}
@@ -0,0 +1,88 @@
+package com.golaszewski.hash_mechanic.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.Driver;
+import com.golaszewski.hash_mechanic.RunSettings;
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class DatasetCacheTest {
+	private final Generator generator = new LowDensityGenerator();
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("cache").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void verifiedFileIsReused() throws IOException {
+		DatasetCache cache = new DatasetCache(directory, Long.MAX_VALUE);
+		File file = generate(cache, 2.0);
+		byte[] expected = Files.readAllBytes(file.toPath());
+
+		// A reused file is not written again.
+		assertTrue(file.setLastModified(0));
+		generate(new DatasetCache(directory, Long.MAX_VALUE), 2.0);
+		assertEquals(0, file.lastModified());
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(1000);
+			raf.write(~expected[1000]);
+		}
+
+		assertFalse(cache.lookup(DatasetCache.createKey(generator, new MD5Wrapper(2.0), 2.0, OutputFormat.RAW),
+				file));
+		generate(cache, 2.0);
+		assertTrue(Arrays.equals(expected, Files.readAllBytes(file.toPath())));
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() throws IOException, InterruptedException {
+		long length = generator.getOutputLength(new MD5Wrapper(1.0));
+		DatasetCache cache = new DatasetCache(directory, 2 * length);
+
+		File first = generate(cache, 1.0);
+		Thread.sleep(5);
+		File second = generate(cache, 2.0);
+		Thread.sleep(5);
+		generate(cache, 1.0);
+		Thread.sleep(5);
+		File third = generate(cache, 3.0);
+
+		assertTrue(first.exists());
+		assertFalse(second.exists());
+		assertTrue(third.exists());
+		assertEquals(2 * length, new DatasetCache(directory, Long.MAX_VALUE).getSize());
+	}
+
+	private File generate(DatasetCache cache, double nRounds) {
+		return Driver.doTest(generator, () -> new MD5Wrapper(nRounds), nRounds, new RunSettings(directory,
+				WriterMode.STREAM, OutputFormat.RAW, Analysis.NONE, cache));
+	}
+}
@@ -0,0 +1,129 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.HashSink;
+import com.golaszewski.hash_mechanic.output.WriteListener;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class CheckpointTest {
+	public static final long CRASH_AT = (1 << 20) + 5;
+
+	@Test
+	public void hashChainResumes() throws Exception {
+		assertResumes(new HashChainGenerator(), WriterMode.STREAM);
+	}
+
+	@Test
+	public void densityResumes() throws Exception {
+		assertResumes(new LowDensityGenerator(), WriterMode.STREAM);
+	}
+
+	@Test
+	public void parallelDensityResumes() throws Exception {
+		assertResumes(new HighDensityGenerator(2), WriterMode.MAPPED);
+	}
+
+	@Test
+	public void shardResumes() throws Exception {
+		assertResumes(new LowDensityGenerator(1, new Shard(1, 2)), WriterMode.STREAM);
+	}
+
+	@Test
+	public void otherRunIsIgnored() throws Exception {
+		File file = File.createTempFile("checkpoint", ".dat");
+		Generator generator = new HashChainGenerator();
+
+		try {
+			crash(generator, file, WriterMode.STREAM);
+			assertFalse(new Checkpoint(file, generator, new MD5Wrapper(3.0), 0).load(file));
+			assertTrue(new Checkpoint(file, generator, new MD5Wrapper(2.0), 0).load(file));
+		} finally {
+			new Checkpoint(file, generator, new MD5Wrapper(2.0)).delete();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Kills a run part way through, resumes it from its checkpoint and checks
+	 * that the file matches an uninterrupted run.
+	 */
+	private static void assertResumes(Generator generator, WriterMode mode) throws Exception {
+		byte[] expected = generator.generateBytes(new MD5Wrapper(2.0));
+		File file = File.createTempFile("checkpoint", ".dat");
+		Checkpoint checkpoint = new Checkpoint(file, generator, new MD5Wrapper(2.0), 0);
+
+		try {
+			crash(generator, file, mode);
+
+			assertTrue(checkpoint.load(file));
+			assertTrue(checkpoint.getOffset() > 0 && checkpoint.getOffset() < CRASH_AT);
+
+			try (HashSink sink = mode.open(file, expected.length, checkpoint.getOffset(), WriteListener.NONE)) {
+				generator.generate(() -> new MD5Wrapper(2.0), sink, checkpoint);
+			}
+
+			assertEquals(expected.length, file.length());
+			assertTrue(Arrays.equals(expected, Files.readAllBytes(file.toPath())));
+		} finally {
+			checkpoint.delete();
+			file.delete();
+		}
+	}
+
+	private static void crash(Generator generator, File file, WriterMode mode) throws IOException {
+		MD5Wrapper digest = new MD5Wrapper(2.0);
+		Checkpoint checkpoint = new Checkpoint(file, generator, digest, 0);
+
+		try (HashSink sink = new CrashingSink(mode.open(file, generator.getOutputLength(digest),
+				WriteListener.NONE))) {
+			generator.generate(() -> new MD5Wrapper(2.0), sink, checkpoint);
+		} catch (IOException e) {
+			return;
+		}
+		throw new AssertionError("The run did not crash!");
+	}
+
+	/**
+	 * Fails once a set number of bytes have been written.
+	 */
+	private static class CrashingSink implements HashSink {
+		private final HashSink sink;
+		private long written;
+
+		CrashingSink(HashSink sink) {
+			this.sink = sink;
+		}
+
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (written + length > CRASH_AT) {
+				throw new IOException("Crashed!");
+			}
+			sink.write(bytes, offset, length);
+			written += length;
+		}
+
+		@Override
+		public void sync() throws IOException {
+			sink.sync();
+		}
+
+		public void close() throws IOException {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				// A short mapped file is expected after a crash.
+			}
+		}
+	}
+}
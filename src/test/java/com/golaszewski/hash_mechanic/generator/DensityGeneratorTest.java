@@ -0,0 +1,42 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.Digest;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+public class DensityGeneratorTest {
+	public static final double N_ROUNDS = 1;
+
+	@Test
+	public void outputLength() {
+		Digest digest = new MD5Wrapper(N_ROUNDS);
+		byte[] output = new LowDensityGenerator().generateBytes(digest);
+		assertEquals(new LowDensityGenerator().getOutputLength(digest), output.length);
+	}
+
+	@Test
+	public void pairsAreHashedInOrder() {
+		final int inputBits = MD5Wrapper.DIGEST_SIZE * 4 * Byte.SIZE;
+		final int i = 3;
+		final int j = 100;
+
+		Digest digest = new MD5Wrapper(N_ROUNDS);
+		byte[] output = new HighDensityGenerator().generateBytes(digest);
+
+		byte[] message = new byte[inputBits / Byte.SIZE];
+		Arrays.fill(message, (byte) 0xFF);
+		message = Generator.toggleBit(Generator.toggleBit(message, i), j);
+		byte[] expected = new byte[digest.getDigestSize()];
+		digest.update(message, 0, message.length);
+		digest.doFinal(expected, 0);
+
+		int offset = (int) (1 + inputBits + DensityGenerator.pairRank(i, j, inputBits)) * digest.getDigestSize();
+		assertTrue(Arrays.equals(expected, Arrays.copyOfRange(output, offset, offset + expected.length)));
+	}
+}
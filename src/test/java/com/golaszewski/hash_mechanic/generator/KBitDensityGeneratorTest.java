@@ -0,0 +1,46 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.Digest;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+public class KBitDensityGeneratorTest {
+	public static final double N_ROUNDS = 1;
+
+	@Test
+	public void messagesAreHashedInOrder() {
+		final int inputBits = MD5Wrapper.DIGEST_SIZE * 4 * Byte.SIZE;
+		final Shard shard = new Shard(5, 2000);
+
+		Digest digest = new MD5Wrapper(N_ROUNDS);
+		KBitDensityGenerator generator = new KBitDensityGenerator((byte) 0x00, 3, 1, shard);
+		byte[] output = generator.generateBytes(digest);
+
+		RevolvingDoor door = new RevolvingDoor(inputBits, 3);
+		long first = shard.getFirst(door.getCount());
+		int[] bits = new int[3];
+		byte[] expected = new byte[output.length];
+
+		assertEquals(door.getCount(), generator.getTotalHashCount(digest));
+		assertEquals(shard.getRecords(door.getCount()) * digest.getDigestSize(), output.length);
+
+		for (int r = 0; r < output.length / digest.getDigestSize(); r++) {
+			byte[] message = new byte[inputBits / Byte.SIZE];
+			door.seek(first + r);
+			door.getBits(bits);
+			for (int bit : bits) {
+				Generator.flipBit(message, bit);
+			}
+			digest.update(message, 0, message.length);
+			digest.doFinal(expected, r * digest.getDigestSize());
+		}
+
+		assertTrue(Arrays.equals(expected, output));
+	}
+}
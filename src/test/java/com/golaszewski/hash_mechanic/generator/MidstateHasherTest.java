@@ -0,0 +1,56 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.Digest;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.BLAKE256Digest;
+
+public class MidstateHasherTest {
+	// Three BLAKE-256 blocks, so flips can fall before, between and after the
+	// cached prefixes.
+	public static final int MESSAGE_BYTES = 3 * 64 + 10;
+
+	@Test
+	public void matchesFullRehash() {
+		final int inputBits = MESSAGE_BYTES * Byte.SIZE;
+		final int[] bits = { -1, 0, 7, 511, 512, 700, 1023, 1024, 1500, inputBits - 1 };
+
+		byte[] base = new byte[MESSAGE_BYTES];
+		Arrays.fill(base, (byte) 0x5A);
+
+		MidstateHasher hasher = new MidstateHasher(new BLAKE256Digest(), base);
+		Digest digest = new BLAKE256Digest();
+		byte[] expected = new byte[digest.getDigestSize()];
+		byte[] actual = new byte[digest.getDigestSize()];
+
+		// Walk the pairs in row order, as the generators do.
+		for (int i : bits) {
+			for (int j : bits) {
+				if (j <= i && j >= 0) {
+					continue;
+				}
+				if (i < 0 && j >= 0) {
+					continue;
+				}
+
+				byte[] message = base;
+				if (i >= 0) {
+					message = Generator.toggleBit(message, i);
+				}
+				if (j >= 0) {
+					message = Generator.toggleBit(message, j);
+				}
+				digest.update(message, 0, message.length);
+				digest.doFinal(expected, 0);
+				digest.reset();
+
+				hasher.hash(i, j, actual, 0);
+				assertTrue(i + ", " + j, Arrays.equals(expected, actual));
+			}
+		}
+	}
+}
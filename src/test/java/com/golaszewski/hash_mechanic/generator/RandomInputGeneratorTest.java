@@ -0,0 +1,61 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.bouncycastle.crypto.Digest;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+public class RandomInputGeneratorTest {
+	public static final double N_ROUNDS = 1;
+	private static final long SEED = 42;
+
+	@Test
+	public void messagesFollowSplittableRandom() {
+		final int length = 20;
+		final int messages = 1000;
+
+		Digest digest = new MD5Wrapper(N_ROUNDS);
+		byte[] output = new RandomInputGenerator(SEED, length, messages, 1, Shard.WHOLE).generateBytes(digest);
+
+		SplittableRandom random = new SplittableRandom(SEED);
+		byte[] message = new byte[length];
+		byte[] expected = new byte[output.length];
+
+		for (int r = 0; r < messages; r++) {
+			for (int i = 0; i < length; i += Long.BYTES) {
+				long word = random.nextLong();
+				for (int b = 0; b < Long.BYTES && i + b < length; b++) {
+					message[i + b] = (byte) (word >>> (Long.SIZE - Byte.SIZE * (b + 1)));
+				}
+			}
+			digest.update(message, 0, length);
+			digest.doFinal(expected, r * digest.getDigestSize());
+		}
+
+		assertTrue(Arrays.equals(expected, output));
+	}
+
+	@Test
+	public void shardsJoinToWhole() {
+		final int shards = 3;
+		byte[] whole = new RandomInputGenerator(SEED, 64, 40000, 1, Shard.WHOLE).generateBytes(new MD5Wrapper(
+				N_ROUNDS));
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+
+		for (int i = 0; i < shards; i++) {
+			byte[] part = new RandomInputGenerator(SEED, 64, 40000, 1, new Shard(i, shards))
+					.generateBytes(new MD5Wrapper(N_ROUNDS));
+			joined.write(part, 0, part.length);
+		}
+
+		assertEquals(whole.length, joined.size());
+		assertTrue(Arrays.equals(whole, joined.toByteArray()));
+	}
+}
@@ -0,0 +1,85 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RevolvingDoorTest {
+
+	@Test
+	public void visitsEverySubsetByOneSwap() {
+		for (int n = 1; n <= 10; n++) {
+			for (int k = 1; k <= n; k++) {
+				RevolvingDoor door = new RevolvingDoor(n, k);
+				Set<Long> seen = new HashSet<Long>();
+				int[] previous = new int[k];
+				int[] bits = new int[k];
+
+				door.getBits(previous);
+				seen.add(mask(previous));
+
+				for (long rank = 1; rank < door.getCount(); rank++) {
+					door.next();
+					door.getBits(bits);
+
+					long changed = mask(previous) ^ mask(bits);
+					assertEquals((1L << door.getOut()) | (1L << door.getIn()), changed);
+					assertTrue((mask(previous) & (1L << door.getOut())) != 0);
+					assertTrue(seen.add(mask(bits)));
+					assertEquals(rank, door.getRank());
+
+					System.arraycopy(bits, 0, previous, 0, k);
+				}
+
+				assertEquals(binomial(n, k), seen.size());
+			}
+		}
+	}
+
+	@Test
+	public void seekMatchesWalk() {
+		RevolvingDoor walk = new RevolvingDoor(40, 4);
+		RevolvingDoor seek = new RevolvingDoor(walk);
+		int[] expected = new int[4];
+		int[] actual = new int[4];
+
+		for (long rank = 0; rank < walk.getCount(); rank++) {
+			if (rank > 0) {
+				walk.next();
+			}
+			if (rank % 997 == 0 || rank == walk.getCount() - 1) {
+				seek.seek(rank);
+				walk.getBits(expected);
+				seek.getBits(actual);
+				assertTrue(Arrays.equals(expected, actual));
+			}
+		}
+	}
+
+	@Test
+	public void countsLargeSpaces() {
+		assertEquals(178433024L, new RevolvingDoor(1024, 3).getCount());
+		assertEquals(45545029376L, new RevolvingDoor(1024, 4).getCount());
+	}
+
+	private static long mask(int[] bits) {
+		long mask = 0;
+		for (int bit : bits) {
+			mask |= 1L << bit;
+		}
+		return mask;
+	}
+
+	private static long binomial(int n, int k) {
+		long result = 1;
+		for (int i = 1; i <= k; i++) {
+			result = result * (n - k + i) / i;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,89 @@
+package com.golaszewski.hash_mechanic.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.util.Pack;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.BatchDigest;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.ChannelSink;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+public class SlicedGeneratorTest {
+	public static final double N_ROUNDS = 1;
+
+	/**
+	 * Three full slices and a partial one.
+	 */
+	public static final long RECORDS = 3L * SlicedGenerator.SLICE_RECORDS + 1000;
+
+	@Test
+	public void recordsFollowTheirIndex() {
+		Digest digest = new MD5Wrapper(N_ROUNDS);
+		Shard shard = new Shard(1, 3);
+		byte[] output = new IndexGenerator(1, shard).generateBytes(digest);
+
+		byte[] expected = new byte[output.length];
+		new IndexGenerator(1, shard).hash(digest, null, shard.getFirst(RECORDS), shard.getFirst(RECORDS)
+				+ shard.getRecords(RECORDS), expected);
+
+		assertEquals(shard.getRecords(RECORDS) * digest.getDigestSize(), output.length);
+		assertTrue(Arrays.equals(expected, output));
+	}
+
+	@Test
+	public void parallelMatchesSerial() throws IOException {
+		Shard shard = new Shard(1, 2);
+		byte[] serial = new IndexGenerator(1, shard).generateBytes(new MD5Wrapper(N_ROUNDS));
+
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		try (HashSink sink = new ChannelSink(Channels.newChannel(parallel))) {
+			new IndexGenerator(3, shard).generate(() -> new MD5Wrapper(N_ROUNDS), sink);
+		}
+
+		assertTrue(Arrays.equals(serial, parallel.toByteArray()));
+	}
+
+	/**
+	 * Hashes each record index as an eight byte message.
+	 */
+	private static class IndexGenerator extends SlicedGenerator {
+		IndexGenerator(int parallelism, Shard shard) {
+			super(parallelism, shard);
+		}
+
+		@Override
+		protected void hash(Digest digest, BatchDigest batch, long from, long to, byte[] output) {
+			byte[] message = new byte[Long.BYTES];
+
+			for (long next = from; next < to; next++) {
+				Pack.longToBigEndian(next, message, 0);
+				digest.update(message, 0, message.length);
+				digest.doFinal(output, (int) (next - from) * digest.getDigestSize());
+			}
+		}
+
+		@Override
+		protected int getMessageLength(Digest digest) {
+			return Long.BYTES;
+		}
+
+		@Override
+		public long getTotalHashCount(Digest digest) {
+			return RECORDS;
+		}
+
+		@Override
+		public String getName() {
+			return "index";
+		}
+	}
+}
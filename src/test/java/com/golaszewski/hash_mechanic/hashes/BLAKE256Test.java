@@ -77,6 +77,21 @@ public class BLAKE256Test {
 		doTest(INPUT_1M_BITS, B_1M_EXPECTED_HASH);
 	}
 
+	@Test
+	public void resetAndOffsetOutput() throws DecoderException {
+		final byte[] expected = Hex.decodeHex(B_896_EXPECTED_HASH.toCharArray());
+		final int outOff = 5;
+
+		BLAKE256Digest blake = new BLAKE256Digest();
+		byte[] in = INPUT_896_BITS.getBytes();
+		byte[] out = new byte[blake.getDigestSize() + outOff];
+		blake.update(in, 0, in.length / 2);
+		blake.reset();
+		blake.update(in, 0, in.length);
+		blake.doFinal(out, outOff);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(out, outOff, out.length), expected));
+	}
+
 	private void doTest(String input, String expectedHash) throws DecoderException {
 		final byte[] expected = Hex.decodeHex(expectedHash.toCharArray());
 		final int inLen = input.length();
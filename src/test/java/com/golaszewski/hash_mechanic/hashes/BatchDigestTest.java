@@ -0,0 +1,99 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BatchDigestTest {
+	public static final int LANES = 7;
+	public static final int MAX_LENGTH = 200;
+
+	@Test
+	public void blake256() {
+		doTest(new BLAKE256Digest());
+	}
+
+	@Test
+	public void brake256() {
+		doTest(new BRAKE256Digest());
+		doTest(new BRAKE256Digest(3));
+	}
+
+	@Test
+	public void md5() {
+		doTest(new MD5Wrapper());
+		doTest(new MD5Wrapper(1.5));
+		doTest(MD5Wrapper.withSteps(37));
+	}
+
+	@Test
+	public void resumesFromSharedBlocks() {
+		doPrefixTest(new BLAKE256Digest());
+		doPrefixTest(new BRAKE256Digest(3));
+		doPrefixTest(new MD5Wrapper(2.5));
+	}
+
+	/**
+	 * Hashes messages that share their first blocks from the chain value
+	 * after those blocks, and checks each hash against the scalar digest.
+	 */
+	private void doPrefixTest(BatchableDigest digest) {
+		BatchDigest batch = digest.createBatch(LANES);
+		int size = digest.getDigestSize();
+		int blockSize = batch.getBlockSize();
+		Random random = new Random(digest.getAlgorithmName().hashCode());
+
+		for (int prefix = 1; prefix <= 2; prefix++) {
+			for (int length = prefix * blockSize; length <= MAX_LENGTH; length += 13) {
+				byte[] in = new byte[LANES * length];
+				random.nextBytes(in);
+				for (int l = 1; l < LANES; l++) {
+					System.arraycopy(in, 0, in, l * length, prefix * blockSize);
+				}
+
+				byte[] out = new byte[LANES * size];
+				batch.digest(batch.chain(in, 0, prefix), prefix, in, 0, length, LANES, out, 0);
+
+				for (int l = 0; l < LANES; l++) {
+					byte[] expected = new byte[size];
+					digest.update(in, l * length, length);
+					digest.doFinal(expected, 0);
+					digest.reset();
+
+					assertTrue(Arrays.equals(expected, Arrays.copyOfRange(out, l * size, (l + 1) * size)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hashes batches of every message length up to a few blocks, including
+	 * partial batches, and checks each hash against the scalar digest.
+	 */
+	private void doTest(BatchableDigest digest) {
+		BatchDigest batch = digest.createBatch(LANES);
+		int size = digest.getDigestSize();
+		Random random = new Random(digest.getAlgorithmName().hashCode());
+
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			int count = 1 + length % LANES;
+			byte[] in = new byte[3 + count * length];
+			random.nextBytes(in);
+
+			byte[] out = new byte[1 + count * size];
+			batch.digest(in, 3, length, count, out, 1);
+
+			for (int l = 0; l < count; l++) {
+				byte[] expected = new byte[size];
+				digest.update(in, 3 + l * length, length);
+				digest.doFinal(expected, 0);
+				digest.reset();
+
+				assertTrue(Arrays.equals(expected, Arrays.copyOfRange(out, 1 + l * size, 1 + (l + 1) * size)));
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.hashes.kernels.MD5Kernels;
+import com.golaszewski.hash_mechanic.hashes.thirdparty.MD5;
+
+public class MD5Test {
+	// Test vectors from RFC 1321.
+	public static final String INPUT_EMPTY = "";
+	public static final String INPUT_ABC = "abc";
+	public static final String INPUT_DIGITS = "12345678901234567890123456789012345678901234567890123456789012345678901234567890";
+
+	public static final String EMPTY_EXPECTED_HASH = "d41d8cd98f00b204e9800998ecf8427e";
+	public static final String ABC_EXPECTED_HASH = "900150983cd24fb0d6963f7d28e17f72";
+	public static final String DIGITS_EXPECTED_HASH = "57edf4a22be3c955ac49da2e2107b67a";
+
+	public static final int[] LENGTHS = { 0, 1, 55, 56, 63, 64, 65, 128, 1000 };
+
+	@Test
+	public void emptyTestVector() throws DecoderException {
+		doTest(INPUT_EMPTY, EMPTY_EXPECTED_HASH);
+	}
+
+	@Test
+	public void abcTestVector() throws DecoderException {
+		doTest(INPUT_ABC, ABC_EXPECTED_HASH);
+	}
+
+	@Test
+	public void digitsTestVector() throws DecoderException {
+		doTest(INPUT_DIGITS, DIGITS_EXPECTED_HASH);
+	}
+
+	@Test
+	public void reducedRoundsMatchReference() {
+		for (double nRounds = 0; nRounds <= 4; nRounds += 0.25) {
+			MD5Wrapper md5 = new MD5Wrapper(nRounds);
+
+			for (int length : LENGTHS) {
+				byte[] in = new byte[length];
+				for (int i = 0; i < length; i++) {
+					in[i] = (byte) i;
+				}
+
+				MD5 reference = new MD5(nRounds);
+				reference.Update(in, 0, length);
+
+				// Hash twice to check the digest resets in place.
+				for (int pass = 0; pass < 2; pass++) {
+					byte[] out = new byte[md5.getDigestSize()];
+					md5.update(in, 0, length);
+					md5.doFinal(out, 0);
+					assertTrue(Arrays.equals(out, reference.Final()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void stepKernelMatchesHalfRounds() {
+		for (int halfRounds = 0; halfRounds <= 8; halfRounds++) {
+			int[] x = new int[16];
+			for (int i = 0; i < x.length; i++) {
+				x[i] = i * 0x01010101;
+			}
+
+			int[] expected = { 1, 2, 3, 4 };
+			int[] actual = { 1, 2, 3, 4 };
+			MD5Kernels.forHalfRounds(halfRounds).apply(expected, x);
+			new MD5Steps(halfRounds * 8).apply(actual, x);
+			assertTrue(Arrays.equals(expected, actual));
+		}
+	}
+
+	@Test
+	public void everyStepCountMatchesPositionalSteps() {
+		int[] x = new int[16];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = i * 0x9E3779B9;
+		}
+
+		for (int nSteps = 0; nSteps <= MD5Steps.NUM_STEPS; nSteps++) {
+			int[] expected = { 0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476 };
+			int[] actual = expected.clone();
+			int[] v = expected.clone();
+
+			// Update the words in place, as the reference implementation does.
+			for (int step = 0; step < nSteps; step++) {
+				int a = (64 - step) % 4;
+				int b = v[(a + 1) % 4], c = v[(a + 2) % 4], d = v[(a + 3) % 4];
+				int f;
+				if (step < 16) {
+					f = (b & c) | (~b & d);
+				} else if (step < 32) {
+					f = (b & d) | (c & ~d);
+				} else if (step < 48) {
+					f = b ^ c ^ d;
+				} else {
+					f = c ^ (b | ~d);
+				}
+				v[a] = b + Integer.rotateLeft(v[a] + f + x[MD5Steps.MESSAGE_INDEX[step]] + MD5Steps.CONSTANT[step],
+						MD5Steps.SHIFT[step]);
+			}
+			for (int i = 0; i < 4; i++) {
+				expected[i] += v[i];
+			}
+
+			new MD5Steps(nSteps).apply(actual, x);
+			assertTrue("step " + nSteps, Arrays.equals(expected, actual));
+		}
+	}
+
+	@Test
+	public void stepsMatchRounds() {
+		byte[] in = INPUT_DIGITS.getBytes();
+
+		for (int nSteps = 0; nSteps <= 64; nSteps += 16) {
+			byte[] expected = new byte[MD5Wrapper.DIGEST_SIZE];
+			MD5Wrapper md5 = new MD5Wrapper(nSteps / 16.0);
+			md5.update(in, 0, in.length);
+			md5.doFinal(expected, 0);
+
+			byte[] out = new byte[MD5Wrapper.DIGEST_SIZE];
+			md5 = MD5Wrapper.withSteps(nSteps);
+			md5.update(in, 0, in.length);
+			md5.doFinal(out, 0);
+			assertTrue(Arrays.equals(out, expected));
+		}
+	}
+
+	private void doTest(String input, String expectedHash) throws DecoderException {
+		final byte[] expected = Hex.decodeHex(expectedHash.toCharArray());
+
+		MD5Wrapper md5 = new MD5Wrapper();
+		byte[] in = input.getBytes();
+		byte[] out = new byte[md5.getDigestSize()];
+		for (int i = 0; i < in.length; i++) {
+			md5.update(in[i]);
+		}
+		md5.doFinal(out, 0);
+		assertTrue(Arrays.equals(out, expected));
+
+		md5.update(in, 0, in.length);
+		md5.doFinal(out, 0);
+		assertTrue(Arrays.equals(out, expected));
+	}
+}
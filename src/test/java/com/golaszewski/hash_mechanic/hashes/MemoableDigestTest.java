@@ -0,0 +1,72 @@
+package com.golaszewski.hash_mechanic.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.util.Memoable;
+import org.junit.Test;
+
+public class MemoableDigestTest {
+	public static final String PREFIX = "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopqabcdefghbcdefghi";
+	public static final String[] SUFFIXES = { "", "x", "cdefghijdefghijkefghijklfghijklmghijklmnhijklmno" };
+
+	@Test
+	public void blake256() {
+		doTest(new BLAKE256Digest());
+	}
+
+	@Test
+	public void brake256() {
+		doTest(new BRAKE256Digest(4));
+	}
+
+	@Test
+	public void md5() {
+		doTest(new MD5Wrapper(3.5));
+		doTest(MD5Wrapper.withSteps(37));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void mismatchedRounds() {
+		MD5Wrapper.withSteps(37).reset(new MD5Wrapper(2));
+	}
+
+	/**
+	 * Branches every suffix from a saved prefix state, both through copy() and
+	 * through restoring the state in place, and checks each against hashing
+	 * the whole message from scratch.
+	 */
+	private <T extends ExtendedDigest & Memoable> void doTest(T digest) {
+		assertEquals(64, digest.getByteLength());
+
+		byte[] prefix = PREFIX.getBytes();
+		digest.update(prefix, 0, prefix.length);
+		Memoable saved = digest.copy();
+
+		for (String suffix : SUFFIXES) {
+			byte[] whole = (PREFIX + suffix).getBytes();
+			byte[] in = suffix.getBytes();
+			byte[] expected = new byte[digest.getDigestSize()];
+			byte[] copied = new byte[digest.getDigestSize()];
+			byte[] restored = new byte[digest.getDigestSize()];
+
+			digest.reset();
+			digest.update(whole, 0, whole.length);
+			digest.doFinal(expected, 0);
+
+			ExtendedDigest branch = (ExtendedDigest) saved.copy();
+			branch.update(in, 0, in.length);
+			branch.doFinal(copied, 0);
+
+			digest.reset(saved);
+			digest.update(in, 0, in.length);
+			digest.doFinal(restored, 0);
+
+			assertTrue(Arrays.equals(expected, copied));
+			assertTrue(Arrays.equals(expected, restored));
+		}
+	}
+}
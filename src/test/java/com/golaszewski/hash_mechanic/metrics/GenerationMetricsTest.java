@@ -0,0 +1,56 @@
+package com.golaszewski.hash_mechanic.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.HashChainGenerator;
+import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.HashSink;
+
+public class GenerationMetricsTest {
+	public static final double ROUNDS = 2;
+
+	@Test
+	public void serialDensity() throws Exception {
+		doTest(new LowDensityGenerator(), 2);
+	}
+
+	@Test
+	public void parallelDensity() throws Exception {
+		doTest(new LowDensityGenerator(3), 2);
+	}
+
+	@Test
+	public void hashChain() throws Exception {
+		doTest(new HashChainGenerator(), 1);
+	}
+
+	/**
+	 * Runs a generator and checks that the totals cover exactly its output.
+	 */
+	private void doTest(Generator generator, int blocksPerHash) throws Exception {
+		final MD5Wrapper digest = new MD5Wrapper(ROUNDS);
+		final long length = generator.getOutputLength(digest);
+
+		generator.generate(() -> new MD5Wrapper(ROUNDS), new HashSink() {
+			public void write(byte[] bytes, int offset, int length) {
+			}
+
+			public void close() {
+			}
+		});
+
+		GenerationMetrics metrics = generator.getMetrics();
+		assertFalse(metrics.isRunning());
+		assertEquals(length, metrics.getTotalBytes());
+		assertEquals(length, metrics.getBytes());
+		assertEquals(length / digest.getDigestSize(), metrics.getHashes());
+		assertEquals(blocksPerHash * metrics.getHashes(), metrics.getCompressions());
+		assertEquals(1.0, metrics.getFractionDone(), 0);
+		assertEquals(0.0, metrics.getEtaSeconds(), 0);
+	}
+}
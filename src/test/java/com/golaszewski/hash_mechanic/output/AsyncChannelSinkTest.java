@@ -0,0 +1,69 @@
+package com.golaszewski.hash_mechanic.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.generator.HighDensityGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+public class AsyncChannelSinkTest {
+	private final byte[] expected = new HighDensityGenerator().generateBytes(new MD5Wrapper(1.0));
+
+	@Test
+	public void writesInOrder() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int half = expected.length / 2;
+
+		try (AsyncChannelSink sink = new AsyncChannelSink(Channels.newChannel(out), 3, 1000, WriteListener.NONE)) {
+			for (int offset = 0; offset < half; offset += 16) {
+				sink.write(expected, offset, Math.min(16, half - offset));
+			}
+
+			sink.sync();
+			assertEquals(half, out.size());
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length - half);
+			direct.put(expected, half, expected.length - half).flip();
+			sink.write(direct);
+		}
+
+		assertTrue(Arrays.equals(expected, out.toByteArray()));
+	}
+
+	@Test(timeout = 10000)
+	public void failureReachesGenerator() throws IOException {
+		WritableByteChannel broken = new WritableByteChannel() {
+			public int write(ByteBuffer src) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			public boolean isOpen() {
+				return true;
+			}
+
+			public void close() {
+			}
+		};
+
+		AsyncChannelSink sink = new AsyncChannelSink(broken, 2, 64, WriteListener.NONE);
+		try {
+			for (int offset = 0; offset + 16 <= expected.length; offset += 16) {
+				sink.write(expected, offset, 16);
+			}
+			sink.close();
+			fail("The failed write was not reported!");
+		} catch (IOException e) {
+			assertEquals("disk full", e.getCause().getMessage());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.golaszewski.hash_mechanic.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.Driver;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.LowDensityGenerator;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+
+public class OutputFormatTest {
+	private final Generator generator = new LowDensityGenerator();
+	private final MD5Wrapper digest = new MD5Wrapper(2.0);
+	private final DatasetHeader header = Driver.createHeader(generator, digest, 2.0);
+	private final byte[] expected = generator.generateBytes(digest);
+
+	@Test
+	public void containerRecords() throws IOException {
+		for (WriterMode mode : new WriterMode[] { WriterMode.STREAM, WriterMode.MAPPED }) {
+			File file = write(OutputFormat.CONTAINER, mode);
+
+			try (ContainerFile container = new ContainerFile(file)) {
+				DatasetHeader read = container.getHeader();
+				byte[] record = new byte[digest.getDigestSize()];
+
+				assertEquals("MD5", read.getAlgorithm());
+				assertEquals("lowdensity", read.getGenerator());
+				assertEquals(2.0, read.getRounds(), 0);
+				assertEquals(expected.length / record.length, read.getRecords());
+
+				for (long i : new long[] { 0, 1, 777, read.getRecords() - 1 }) {
+					container.read(i, record, 0);
+					assertTrue(Arrays.equals(Arrays.copyOfRange(expected, (int) i * record.length, (int) (i + 1)
+							* record.length), record));
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void asciiBits() throws IOException {
+		for (WriterMode mode : new WriterMode[] { WriterMode.STREAM, WriterMode.MAPPED }) {
+			File file = write(OutputFormat.ASCII, mode);
+
+			try {
+				byte[] ascii = Files.readAllBytes(file.toPath());
+				assertEquals(expected.length * Byte.SIZE, ascii.length);
+
+				for (int bit = 0; bit < ascii.length; bit += 997) {
+					int value = (expected[bit / Byte.SIZE] >>> (Byte.SIZE - bit % Byte.SIZE - 1)) & 1;
+					assertEquals('0' + value, ascii[bit]);
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void containerContinues() throws IOException {
+		File file = File.createTempFile("format", OutputFormat.CONTAINER.getExtension());
+		int half = expected.length / 2;
+
+		try {
+			try (HashSink sink = OutputFormat.CONTAINER.open(file, WriterMode.STREAM, header, 0, WriteListener.NONE)) {
+				sink.write(expected, 0, half);
+			}
+			try (HashSink sink = OutputFormat.CONTAINER.open(file, WriterMode.STREAM, header, half,
+					WriteListener.NONE)) {
+				sink.write(expected, half, expected.length - half);
+			}
+
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			assertEquals(OutputFormat.CONTAINER.getFileLength(header), bytes.length);
+			assertTrue(Arrays.equals(expected, Arrays.copyOfRange(bytes, bytes.length - expected.length,
+					bytes.length)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private File write(OutputFormat format, WriterMode mode) throws IOException {
+		File file = File.createTempFile("format", format.getExtension());
+
+		try (HashSink sink = format.open(file, mode, header, 0, WriteListener.NONE)) {
+			generator.generate(digest, sink);
+		}
+
+		assertEquals(format.getFileLength(header), file.length());
+		return file;
+	}
+}
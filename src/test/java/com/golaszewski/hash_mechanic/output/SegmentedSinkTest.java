@@ -0,0 +1,90 @@
+package com.golaszewski.hash_mechanic.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SegmentedSinkTest {
+	public static final int SEGMENT_SIZE = 100;
+	public static final int RECORD_SIZE = 33;
+	public static final int LENGTH = 1000;
+
+	@Test
+	public void mappedSegments() throws IOException {
+		byte[] expected = data();
+		File file = File.createTempFile("segments", ".dat");
+
+		try {
+			try (MappedFileSink sink = new MappedFileSink(file, LENGTH, SEGMENT_SIZE)) {
+				writeRecords(sink, expected);
+			}
+			assertTrue(Arrays.equals(expected, Files.readAllBytes(file.toPath())));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void mappedShortWrite() throws IOException {
+		File file = File.createTempFile("segments", ".dat");
+
+		try (MappedFileSink sink = new MappedFileSink(file, LENGTH, SEGMENT_SIZE)) {
+			sink.write(data(), 0, LENGTH - 1);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void arenaSegments() throws IOException {
+		byte[] expected = data();
+
+		try (OffHeapArena arena = new OffHeapArena(SEGMENT_SIZE)) {
+			writeRecords(arena, expected);
+			assertEquals(LENGTH, arena.size());
+
+			byte[] read = new byte[LENGTH];
+			arena.read(0, read, 0, 150);
+			arena.read(150, read, 150, LENGTH - 150);
+			assertTrue(Arrays.equals(expected, read));
+			assertEquals(expected[SEGMENT_SIZE * 3 + 7], arena.get(SEGMENT_SIZE * 3 + 7));
+
+			ByteArrayOutputStream copy = new ByteArrayOutputStream();
+			arena.writeTo(Channels.newChannel(copy));
+			assertTrue(Arrays.equals(expected, copy.toByteArray()));
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void arenaReadPastEnd() {
+		try (OffHeapArena arena = new OffHeapArena(SEGMENT_SIZE)) {
+			arena.write(data(), 0, 10);
+			arena.get(10);
+		}
+	}
+
+	private static byte[] data() {
+		byte[] bytes = new byte[LENGTH];
+		new Random(LENGTH).nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Writes in records that do not divide the segment size, so writes
+	 * straddle segment boundaries.
+	 */
+	private static void writeRecords(HashSink sink, byte[] bytes) throws IOException {
+		for (int offset = 0; offset < bytes.length; offset += RECORD_SIZE) {
+			sink.write(bytes, offset, Math.min(RECORD_SIZE, bytes.length - offset));
+		}
+	}
+}
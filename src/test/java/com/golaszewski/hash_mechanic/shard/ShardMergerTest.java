@@ -0,0 +1,112 @@
+package com.golaszewski.hash_mechanic.shard;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.golaszewski.hash_mechanic.Driver;
+import com.golaszewski.hash_mechanic.RunSettings;
+import com.golaszewski.hash_mechanic.analysis.Analysis;
+import com.golaszewski.hash_mechanic.cache.DatasetCache;
+import com.golaszewski.hash_mechanic.generator.Generator;
+import com.golaszewski.hash_mechanic.generator.HighDensityGenerator;
+import com.golaszewski.hash_mechanic.generator.Shard;
+import com.golaszewski.hash_mechanic.hashes.MD5Wrapper;
+import com.golaszewski.hash_mechanic.output.OutputFormat;
+import com.golaszewski.hash_mechanic.output.WriterMode;
+
+public class ShardMergerTest {
+	private static final int SHARDS = 3;
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("shard").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void mergedShardsMatchSingleRun() throws IOException {
+		byte[] expected = new HighDensityGenerator().generateBytes(new MD5Wrapper(2.0));
+		File merged = new File(directory, "merged.dat");
+
+		ShardMerger.merge(merged, generateShards());
+
+		assertTrue(Arrays.equals(expected, Files.readAllBytes(merged.toPath())));
+	}
+
+	@Test
+	public void mergedAnalysesMatchSingleRun() throws IOException {
+		Analysis analysis = new Analysis(true, true, 2);
+		File whole = Driver.doTest(new HighDensityGenerator(), () -> new MD5Wrapper(2.0), 2.0, new RunSettings(
+				directory, WriterMode.STREAM, OutputFormat.RAW, analysis, DatasetCache.NONE));
+		File merged = new File(directory, "merged.dat");
+
+		ShardMerger.merge(merged, generateShards(analysis));
+
+		for (String extension : Arrays.asList(Analysis.STATISTICS_EXTENSION, Analysis.AVALANCHE_EXTENSION)) {
+			assertTrue(Arrays.equals(Files.readAllBytes(new File(whole.getPath() + extension).toPath()), Files
+					.readAllBytes(new File(merged.getPath() + extension).toPath())));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void missingShardIsRejected() throws IOException {
+		List<File> descriptors = generateShards();
+		descriptors.remove(1);
+		ShardMerger.merge(new File(directory, "merged.dat"), descriptors);
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptShardIsRejected() throws IOException {
+		List<File> descriptors = generateShards();
+
+		try (RandomAccessFile raf = new RandomAccessFile(ShardDescriptor.read(descriptors.get(2)).getDataFile(),
+				"rw")) {
+			raf.seek(100);
+			raf.write(raf.read() ^ 1);
+		}
+
+		ShardMerger.merge(new File(directory, "merged.dat"), descriptors);
+	}
+
+	private List<File> generateShards() {
+		return generateShards(Analysis.NONE);
+	}
+
+	/**
+	 * Generates every shard, in reverse order, some of them on several
+	 * threads, running the analyses over each.
+	 */
+	private List<File> generateShards(Analysis analysis) {
+		RunSettings settings = new RunSettings(directory, WriterMode.STREAM, OutputFormat.RAW, analysis,
+				DatasetCache.NONE);
+		List<File> descriptors = new ArrayList<File>();
+
+		for (int i = SHARDS - 1; i >= 0; i--) {
+			Generator generator = new HighDensityGenerator(1 + i % 2, new Shard(i, SHARDS));
+			File output = Driver.doTest(generator, () -> new MD5Wrapper(2.0), 2.0, settings);
+			descriptors.add(ShardDescriptor.getFile(output));
+		}
+
+		return descriptors;
+	}
+}